@@ -0,0 +1,66 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link Broadcast} that tells its sender once every micro-service it was
+ * delivered to has handled it.
+ * <p>
+ * The message-bus counts the subscribers it delivers the broadcast to and each
+ * of them acknowledges it after calling its callback. A broadcast that is
+ * discarded, coalesced or left behind by a terminating micro-service is
+ * acknowledged too, so the sender is never left waiting.
+ */
+public abstract class AcknowledgedBroadcast implements Broadcast
+{
+	private final AtomicInteger pending = new AtomicInteger(1);
+	private volatile Runnable onAcknowledged;
+
+	/**
+	 * Sets the action to run once every recipient has handled this broadcast.
+	 * Must be called before the broadcast is sent. The action runs on the
+	 * thread of the last recipient, or on the sender's thread if there were no
+	 * recipients, so it should be short.
+	 * <p>
+	 * @param action the action to run.
+	 */
+	public final void whenAcknowledged(Runnable action)
+	{
+		this.onAcknowledged = action;
+	}
+
+	/**
+	 * Called by the message-bus for every micro-service the broadcast is
+	 * delivered to.
+	 */
+	final void expect()
+	{
+		pending.incrementAndGet();
+	}
+
+	/**
+	 * Called once by every recipient, and once by the message-bus when it is
+	 * done delivering.
+	 */
+	final void acknowledge()
+	{
+		if (pending.decrementAndGet() == 0)
+		{
+			Runnable action = onAcknowledged;
+			if (action != null)
+				action.run();
+		}
+	}
+
+	/**
+	 * Acknowledges {@code m} if it is an {@link AcknowledgedBroadcast}, or
+	 * the message it held if it is the slot of a {@link CoalescingMailbox}.
+	 */
+	static void release(Message m)
+	{
+		if (m instanceof CoalescingMailbox.Slot)
+			m = ((CoalescingMailbox.Slot) m).evict();
+		if (m instanceof AcknowledgedBroadcast)
+			((AcknowledgedBroadcast) m).acknowledge();
+	}
+}
@@ -0,0 +1,14 @@
+package bgu.spl.mics;
+
+/**
+ * What a bounded {@link Mailbox} does with a message that arrives while it is
+ * full.
+ */
+public enum Backpressure {
+    /** The sender waits until there is room for the message. */
+    BLOCK,
+    /** The oldest waiting message is discarded to make room. */
+    DROP_OLDEST,
+    /** The new message is discarded. */
+    REJECT
+}
@@ -0,0 +1,253 @@
+package bgu.spl.mics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumentation of the {@link MessageBusImpl}: how many messages of each
+ * type are sent, how long they wait in mailboxes, how deep mailboxes get and
+ * how long callbacks take. Enabled by {@link MessageBusImpl#enableMetrics()};
+ * while disabled, the bus and micro-services only check that it is off.
+ * <p>
+ * The time a message waits is measured from just before it is added to a
+ * mailbox to just before its callback is called, by remembering when each
+ * waiting message was added. A message that never reaches a callback, being
+ * dropped or replaced by a newer one, is forgotten once a mailbox has
+ * remembered {@value #MAX_STAMPS} messages, and counted as a lost sample.
+ * Histograms take fixed memory, see {@link LatencyHistogram}.
+ */
+public final class BusMetrics implements BusMetricsMXBean
+{
+	/** The name the metrics are registered under with the MBean server. */
+	public static final String OBJECT_NAME = "bgu.spl.mics:type=MessageBus";
+	private static final int MAX_STAMPS = 1 << 16;
+
+	/**
+	 * A summary of a {@link LatencyHistogram}, in nanoseconds.
+	 */
+	public static final class Latency
+	{
+		private final long count;
+		private final double mean;
+		private final long p50;
+		private final long p99;
+		private final long max;
+
+		private Latency(LatencyHistogram histogram)
+		{
+			this.count = histogram.count();
+			this.mean = histogram.mean();
+			this.p50 = histogram.percentile(50);
+			this.p99 = histogram.percentile(99);
+			this.max = histogram.max();
+		}
+		public long getCount()
+		{
+			return count;
+		}
+		public double getMean()
+		{
+			return mean;
+		}
+		public long getP50()
+		{
+			return p50;
+		}
+		public long getP99()
+		{
+			return p99;
+		}
+		public long getMax()
+		{
+			return max;
+		}
+	}
+
+	/**
+	 * The metrics of one micro-service.
+	 */
+	private static final class ServiceMetrics
+	{
+		private final Map<Message, Long> stamps = new ConcurrentHashMap<>();
+		private final AtomicInteger maxDepth = new AtomicInteger();
+		private final LatencyHistogram callbacks = new LatencyHistogram();
+		private volatile boolean unregistered;
+	}
+
+	private final MessageBusImpl bus;
+	private final long enabledAt;
+	private final Map<Class<?>, LongAdder> sends;
+	private final Map<Class<?>, LatencyHistogram> latencies;
+	private final Map<MicroService, ServiceMetrics> services;
+	private final LongAdder lost;
+
+	BusMetrics(MessageBusImpl bus)
+	{
+		this.bus = bus;
+		this.enabledAt = System.nanoTime();
+		this.sends = new ConcurrentHashMap<>();
+		this.latencies = new ConcurrentHashMap<>();
+		this.services = new ConcurrentHashMap<>();
+		this.lost = new LongAdder();
+	}
+
+	/**
+	 * Counts {@code m} as sent.
+	 */
+	void sent(Message m)
+	{
+		LongAdder count = sends.get(m.getClass());
+		if (count == null)
+			count = sends.computeIfAbsent(m.getClass(), type -> new LongAdder());
+		count.increment();
+	}
+
+	/**
+	 * Remembers that {@code m} is being added to the mailbox of {@code to},
+	 * at {@code at} as given by {@link System#nanoTime()}.
+	 */
+	void adding(MicroService to, Message m, long at)
+	{
+		ServiceMetrics service = service(to);
+		if (service.stamps.size() >= MAX_STAMPS)
+		{
+			lost.add(service.stamps.size());
+			service.stamps.clear();
+		}
+		service.stamps.put(m, at);
+	}
+
+	/**
+	 * Records the outcome of adding {@code m} to the mailbox of {@code to}.
+	 *
+	 * @param depth The number of messages waiting in the mailbox after.
+	 */
+	void added(MicroService to, Message m, boolean added, int depth)
+	{
+		ServiceMetrics service = service(to);
+		if (!added)
+			service.stamps.remove(m);
+		service.maxDepth.accumulateAndGet(depth, Math::max);
+	}
+
+	/**
+	 * Records that {@code by} took {@code m} from its mailbox.
+	 *
+	 * @return the time, to pass to {@link #handled(MicroService, long)}.
+	 */
+	long taken(MicroService by, Message m)
+	{
+		long now = System.nanoTime();
+		Long at = service(by).stamps.remove(m);
+		if (at != null)
+			latency(m.getClass()).record(now - at);
+		return now;
+	}
+
+	/**
+	 * Records that a callback of {@code by} called at {@code since} returned.
+	 */
+	void handled(MicroService by, long since)
+	{
+		service(by).callbacks.record(System.nanoTime() - since);
+	}
+
+	/**
+	 * Forgets the waiting messages of {@code m}, which unregistered, and
+	 * leaves it out of the mailbox depths from now on.
+	 */
+	void unregistered(MicroService m)
+	{
+		ServiceMetrics service = services.get(m);
+		if (service != null)
+		{
+			service.unregistered = true;
+			lost.add(service.stamps.size());
+			service.stamps.clear();
+		}
+	}
+
+	@Override
+	public long getUptimeMillis()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enabledAt);
+	}
+
+	@Override
+	public Map<String, Long> getSendCounts()
+	{
+		Map<String, Long> counts = new TreeMap<>();
+		sends.forEach((type, count) -> counts.merge(type.getSimpleName(), count.sum(), Long::sum));
+		return counts;
+	}
+
+	@Override
+	public Map<String, Double> getSendRates()
+	{
+		double seconds = Math.max(1, System.nanoTime() - enabledAt) / 1e9;
+		Map<String, Double> rates = new TreeMap<>();
+		getSendCounts().forEach((type, count) -> rates.put(type, count / seconds));
+		return rates;
+	}
+
+	@Override
+	public Map<String, Latency> getQueueLatencies()
+	{
+		Map<String, Latency> summaries = new TreeMap<>();
+		latencies.forEach((type, histogram) -> summaries.put(type.getSimpleName(), new Latency(histogram)));
+		return summaries;
+	}
+
+	@Override
+	public Map<String, Integer> getMailboxDepths()
+	{
+		Map<String, Integer> depths = new TreeMap<>();
+		services.forEach((m, service) -> {
+			if (!service.unregistered)
+				depths.put(m.getName(), bus.getQueueSize(m));
+		});
+		return depths;
+	}
+
+	@Override
+	public Map<String, Integer> getMaxMailboxDepths()
+	{
+		Map<String, Integer> depths = new TreeMap<>();
+		services.forEach((m, service) -> depths.merge(m.getName(), service.maxDepth.get(), Math::max));
+		return depths;
+	}
+
+	@Override
+	public Map<String, Latency> getCallbackTimes()
+	{
+		Map<String, Latency> summaries = new TreeMap<>();
+		services.forEach((m, service) -> summaries.put(m.getName(), new Latency(service.callbacks)));
+		return summaries;
+	}
+
+	@Override
+	public long getLostSamples()
+	{
+		return lost.sum();
+	}
+
+	private ServiceMetrics service(MicroService m)
+	{
+		ServiceMetrics service = services.get(m);
+		if (service == null)
+			service = services.computeIfAbsent(m, k -> new ServiceMetrics());
+		return service;
+	}
+
+	private LatencyHistogram latency(Class<?> type)
+	{
+		LatencyHistogram histogram = latencies.get(type);
+		if (histogram == null)
+			histogram = latencies.computeIfAbsent(type, k -> new LatencyHistogram());
+		return histogram;
+	}
+}
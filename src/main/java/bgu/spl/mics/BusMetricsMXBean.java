@@ -0,0 +1,56 @@
+package bgu.spl.mics;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link BusMetrics}, registered with the
+ * platform MBean server as {@value BusMetrics#OBJECT_NAME} while metrics are
+ * enabled. Message types are named by their simple class name and
+ * micro-services by their name.
+ */
+public interface BusMetricsMXBean
+{
+	/**
+	 * @return the milliseconds since metrics were enabled.
+	 */
+	long getUptimeMillis();
+
+	/**
+	 * @return the number of messages sent, by message type.
+	 */
+	Map<String, Long> getSendCounts();
+
+	/**
+	 * @return the messages sent per second since metrics were enabled, by
+	 *         message type.
+	 */
+	Map<String, Double> getSendRates();
+
+	/**
+	 * @return the time messages waited in mailboxes between being added and
+	 *         being taken, by message type.
+	 */
+	Map<String, BusMetrics.Latency> getQueueLatencies();
+
+	/**
+	 * @return the number of messages waiting in the mailbox of each
+	 *         registered micro-service.
+	 */
+	Map<String, Integer> getMailboxDepths();
+
+	/**
+	 * @return the most messages that waited in the mailbox of each
+	 *         micro-service at once.
+	 */
+	Map<String, Integer> getMaxMailboxDepths();
+
+	/**
+	 * @return the time the callbacks of each micro-service took.
+	 */
+	Map<String, BusMetrics.Latency> getCallbackTimes();
+
+	/**
+	 * @return the number of messages whose queue latency was not measured.
+	 */
+	long getLostSamples();
+}
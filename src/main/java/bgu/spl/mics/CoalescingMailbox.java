@@ -0,0 +1,116 @@
+package bgu.spl.mics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Adds {@link Mailbox#offerLatest(Message)} to a mailbox.
+ * <p>
+ * For every message type offered this way, the newest message is kept in a
+ * slot and only the slot itself waits in the wrapped mailbox, once. When the
+ * slot is taken, it yields the newest message offered so far; the ones it
+ * replaced are never delivered.
+ * <p>
+ * A slot waits in the wrapped mailbox like any other message. If the wrapped
+ * mailbox rejects or evicts it, the slot is emptied and the message it held
+ * released, so that the next message of its type takes the slot again.
+ */
+class CoalescingMailbox implements Mailbox
+{
+	private final Mailbox inner;
+	private final Map<Class<?>, Slot> slots;
+
+	CoalescingMailbox(Mailbox inner)
+	{
+		this.inner = inner;
+		this.slots = new ConcurrentHashMap<>();
+	}
+
+	@Override
+	public boolean offer(Message m)
+	{
+		return inner.offer(m);
+	}
+
+	@Override
+	public boolean offerLatest(Message m)
+	{
+		Slot slot = slots.get(m.getClass());
+		if (slot == null)
+			slot = slots.computeIfAbsent(m.getClass(), type -> new Slot());
+		Message replaced = slot.getAndSet(m);
+		if (replaced != null)
+		{
+			AcknowledgedBroadcast.release(replaced);
+			return true;
+		}
+		if (inner.offer(slot))
+			return true;
+		// the slot is in no mailbox: empty it whatever it holds now
+		Message held = slot.getAndSet(null);
+		if (held == m)
+			return false;
+		// m was replaced, and released, by a newer message that is now dropped
+		AcknowledgedBroadcast.release(held);
+		return true;
+	}
+
+	@Override
+	public Message take() throws InterruptedException
+	{
+		return resolve(inner.take());
+	}
+
+	@Override
+	public int take(Message[] batch) throws InterruptedException
+	{
+		int n = inner.take(batch);
+		for (int i = 0; i < n; i++)
+			batch[i] = resolve(batch[i]);
+		return n;
+	}
+
+	@Override
+	public Message poll()
+	{
+		return resolve(inner.poll());
+	}
+
+	@Override
+	public int size()
+	{
+		return inner.size();
+	}
+
+	@Override
+	public long dropped()
+	{
+		return inner.dropped();
+	}
+
+	private static Message resolve(Message m)
+	{
+		if (m instanceof Slot)
+			return ((Slot) m).getAndSet(null);
+		return m;
+	}
+
+	/**
+	 * Holds the newest waiting message of one type.
+	 */
+	static final class Slot extends AtomicReference<Message> implements Message
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Empties the slot, which was evicted from the wrapped mailbox.
+		 *
+		 * @return the message it held, or null.
+		 */
+		Message evict()
+		{
+			return getAndSet(null);
+		}
+	}
+}
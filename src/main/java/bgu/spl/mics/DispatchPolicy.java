@@ -0,0 +1,84 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Decides which of the micro-services subscribed to an {@link Event} type
+ * receives a sent event. Each event type has its own policy instance (see
+ * {@link MessageBusImpl#setDispatchPolicy(Class, DispatchPolicy)}), so a
+ * policy may keep per-type state such as a cursor.
+ * <p>
+ * Policies are called concurrently by every sending thread and must not
+ * block.
+ */
+public interface DispatchPolicy
+{
+    /**
+     * @param e           The event being sent.
+     * @param subscribers The current subscribers of {@code e.getClass()}, never
+     *                    empty. The array must not be modified.
+     * @param depth       The number of messages waiting in a subscriber's queue.
+     * @return the index in {@code subscribers} of the micro-service that should
+     *         receive {@code e}.
+     */
+    int select(Event<?> e, MicroService[] subscribers, ToIntFunction<MicroService> depth);
+
+    /**
+     * @return a policy handing events to the subscribers one after the other.
+     */
+    static DispatchPolicy roundRobin()
+    {
+        AtomicInteger cursor = new AtomicInteger();
+        return (e, subscribers, depth) -> (cursor.getAndIncrement() & Integer.MAX_VALUE) % subscribers.length;
+    }
+
+    /**
+     * @return a policy handing each event to the subscriber with the fewest
+     *         waiting messages. Ties are broken in a round-robin fashion so that
+     *         idle subscribers share the work.
+     */
+    static DispatchPolicy leastLoaded()
+    {
+        AtomicInteger cursor = new AtomicInteger();
+        return (e, subscribers, depth) -> {
+            int start = (cursor.getAndIncrement() & Integer.MAX_VALUE) % subscribers.length;
+            int best = start;
+            int bestDepth = Integer.MAX_VALUE;
+            for (int i = 0; i < subscribers.length && bestDepth > 0; i++)
+            {
+                int index = (start + i) % subscribers.length;
+                int d = depth.applyAsInt(subscribers[index]);
+                if (d < bestDepth)
+                {
+                    best = index;
+                    bestDepth = d;
+                }
+            }
+            return best;
+        };
+    }
+
+    /**
+     * Returns a policy that always hands events with equal keys to the same
+     * subscriber, as long as the subscribers do not change.
+     * <p>
+     * @param <E>  The type of event the policy is used for.
+     * @param type The {@link Class} representing the type of event.
+     * @param key  Extracts the key of an event. A null key is dispatched to the
+     *             first subscriber.
+     * @return the sticky policy.
+     */
+    static <E extends Event<?>> DispatchPolicy stickyByKey(Class<E> type, Function<? super E, ?> key)
+    {
+        return (e, subscribers, depth) -> {
+            Object k = key.apply(type.cast(e));
+            if (k == null)
+                return 0;
+            int h = k.hashCode();
+            h ^= (h >>> 16);
+            return (h & Integer.MAX_VALUE) % subscribers.length;
+        };
+    }
+}
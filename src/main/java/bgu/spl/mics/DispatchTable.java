@@ -0,0 +1,56 @@
+package bgu.spl.mics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The callbacks of a micro-service, indexed by message type.
+ * <p>
+ * Every message class is given a small index the first time it is seen
+ * (cached by a {@link ClassValue}), and a micro-service keeps its callbacks in
+ * an array at those indexes. Dispatching a message is then an array read,
+ * the same for events and broadcasts, with no hashing and no allocation.
+ */
+class DispatchTable
+{
+	private static final AtomicInteger NEXT_INDEX = new AtomicInteger();
+	private static final ClassValue<Integer> INDEX = new ClassValue<Integer>()
+	{
+		@Override
+		protected Integer computeValue(Class<?> type)
+		{
+			return NEXT_INDEX.getAndIncrement();
+		}
+	};
+
+	private volatile Callback<?>[] callbacks = new Callback<?>[0];
+
+	/**
+	 * Sets {@code callback} as the callback of messages of type {@code type},
+	 * replacing any previous one.
+	 */
+	synchronized void put(Class<? extends Message> type, Callback<?> callback)
+	{
+		int index = INDEX.get(type);
+		Callback<?>[] table = callbacks;
+		table = Arrays.copyOf(table, Math.max(table.length, index + 1));
+		table[index] = callback;
+		callbacks = table;
+	}
+
+	/**
+	 * Calls the callback of {@code m}'s type, if there is one.
+	 * <p>
+	 * @return true if a callback was called.
+	 */
+	@SuppressWarnings("unchecked")
+	boolean dispatch(Message m)
+	{
+		int index = INDEX.get(m.getClass());
+		Callback<?>[] table = callbacks;
+		if (index >= table.length || table[index] == null)
+			return false;
+		((Callback<Message>) table[index]).call(m);
+		return true;
+	}
+}
@@ -0,0 +1,20 @@
+package bgu.spl.mics;
+
+/**
+ * How a {@link ServiceExecutor} runs the event loops of micro-services.
+ */
+public enum ExecutionMode {
+    /** Every micro-service owns a platform thread, blocked while its mailbox is empty. */
+    THREAD_PER_SERVICE,
+    /**
+     * Every micro-service owns a virtual thread. Requires a Java 21 runtime;
+     * on older runtimes platform threads are used instead.
+     */
+    VIRTUAL_THREAD,
+    /**
+     * Micro-services share a fixed pool of worker threads, and a micro-service
+     * is scheduled on the pool only while its mailbox holds messages.
+     * Callbacks must not block, or they hold on to a pool worker.
+     */
+    POOLED
+}
@@ -1,70 +1,126 @@
 package bgu.spl.mics;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
 
 /**
  * A Future object represents a promised result - an object that will
  * eventually be resolved to hold a result of some operation. The class allows
  * Retrieving the result once it is available.
- * 
+ * <p>
+ * A Future is completed exactly once, either by {@link #resolve(Object)} or by
+ * {@link #fail(Throwable)}, with a single compare-and-set on its state. Instead
+ * of blocking on {@link #get()}, callers may register callbacks with
+ * {@link #onComplete(Callback)} or chain transformations with
+ * {@link #thenApply(Function)}; these run on the completing thread (or
+ * immediately, if the Future is already completed) and never park a thread.
+ *
  * Only private methods may be added to this class.
  * No public constructor is allowed except for the empty constructor.
  */
 public class Future<T>
 {
-	private T result;
-	private boolean isDone;
+	/** The state of a Future resolved to null. */
+	private static final Object NIL = new Object();
+	/** Marks the callback stack of a completed Future. */
+	private static final Node DONE = new Node(null);
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<Future, Object> STATE =
+			AtomicReferenceFieldUpdater.newUpdater(Future.class, Object.class, "state");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<Future, Node> CALLBACKS =
+			AtomicReferenceFieldUpdater.newUpdater(Future.class, Node.class, "callbacks");
+	private static final AtomicReferenceFieldUpdater<Node, Thread> WAITER =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, Thread.class, "waiter");
+
+	/** null while pending, then the result, {@link #NIL} or a {@link Failure}. */
+	private volatile Object state;
+	/** Stack of callbacks waiting for completion, {@link #DONE} once completed. */
+	private volatile Node callbacks;
+
 	/**
 	 * This should be the the only public constructor in this class.
 	 */
 	public Future()
 	{
-		result = null;
-		isDone = false;
 	}
-	
+
+	/**
+	 * Returns a Future completed together with {@code stage}.
+	 * <p>
+	 * @param stage the stage to follow.
+	 * @return the new Future.
+	 */
+	public static <T> Future<T> of(CompletionStage<T> stage)
+	{
+		Future<T> future = new Future<>();
+		stage.whenComplete((result, cause) -> {
+			if (cause != null)
+				future.fail(cause);
+			else
+				future.resolve(result);
+		});
+		return future;
+	}
+
 	/**
      * retrieves the result the Future object holds if it has been resolved.
      * This is a blocking method! It waits for the computation in case it has
      * not been completed.
      * <p>
      * @return return the result of type T if it is available, if not wait until it is available.
-     * 	       
+     *         null if the Future failed, or if the waiting thread was
+     *         interrupted (its interrupt status is then set).
      */
 	public T get()
 	{
-		while(!isDone)
-		{
-			try {
-				wait();
-			} catch (Exception e) {
-				Thread.currentThread().interrupt();
-			}
-		}
-		return result;
+		return valueOf(await(false, 0));
 	}
-	
+
 	/**
      * Resolves the result of this Future object.
+     * Has no effect if this Future is already completed.
      */
 	public void resolve (T result)
 	{
-		if(!isDone)
-		{
-			this.isDone = true;
-			this.result = result;
-			notifyAll();
-		}
+		complete(result == null ? NIL : result);
+	}
+
+	/**
+	 * Completes this Future with a failure: {@link #get()} returns null and
+	 * chained Futures fail with the same cause.
+	 * Has no effect if this Future is already completed.
+	 * <p>
+	 * @param cause why no result will be available.
+	 */
+	public void fail(Throwable cause)
+	{
+		complete(new Failure(cause));
 	}
-	
+
 	/**
      * @return true if this object has been resolved, false otherwise
      */
 	public boolean isDone()
 	{
-		return this.isDone;
+		return state != null;
+	}
+
+	/**
+	 * @return the cause this Future failed with, null if it is pending or was
+	 *         resolved.
+	 */
+	public Throwable getFailure()
+	{
+		Object s = state;
+		return s instanceof Failure ? ((Failure) s).cause : null;
 	}
-	
+
 	/**
      * retrieves the result the Future object holds if it has been resolved,
      * This method is non-blocking, it has a limited amount of time determined
@@ -72,20 +128,221 @@ public class Future<T>
      * <p>
      * @param timout 	the maximal amount of time units to wait for the result.
      * @param unit		the {@link TimeUnit} time units to wait.
-     * @return return the result of type T if it is available, if not, 
+     * @return return the result of type T if it is available, if not,
      * 	       wait for {@code timeout} TimeUnits {@code unit}. If time has
      *         elapsed, return null.
      */
 	public T get(long timeout, TimeUnit unit)
 	{
-		while(!isDone)
+		return valueOf(await(true, unit.toNanos(timeout)));
+	}
+
+	/**
+	 * Registers {@code callback} to be called with the result once this Future
+	 * is completed (with null if it failed). If it is already completed, the
+	 * callback is called right away on the calling thread. An exception
+	 * thrown by a callback called on completion is passed to the uncaught
+	 * exception handler of the completing thread, not thrown to it.
+	 * <p>
+	 * @param callback the callback to call.
+	 */
+	public void onComplete(Callback<? super T> callback)
+	{
+		push(new Node(s -> callback.call(valueOf(s))));
+	}
+
+	/**
+	 * Returns a Future resolved to {@code fn} applied to this Future's result.
+	 * If this Future fails, or {@code fn} throws, the returned Future fails.
+	 * <p>
+	 * @param fn the function to apply to the result.
+	 * @return the chained Future.
+	 */
+	public <U> Future<U> thenApply(Function<? super T, ? extends U> fn)
+	{
+		Future<U> next = new Future<>();
+		push(new Node(s -> {
+			if (s instanceof Failure)
+			{
+				next.complete(s);
+				return;
+			}
+			try
+			{
+				next.resolve(fn.apply(valueOf(s)));
+			}
+			catch (RuntimeException e)
+			{
+				next.fail(e);
+			}
+		}));
+		return next;
+	}
+
+	/**
+	 * @return a {@link CompletableFuture} completed together with this Future.
+	 */
+	public CompletableFuture<T> toCompletableFuture()
+	{
+		CompletableFuture<T> cf = new CompletableFuture<>();
+		push(new Node(s -> {
+			if (s instanceof Failure)
+				cf.completeExceptionally(((Failure) s).cause);
+			else
+				cf.complete(valueOf(s));
+		}));
+		return cf;
+	}
+
+	private void complete(Object outcome)
+	{
+		if (!STATE.compareAndSet(this, null, outcome))
+			return;
+		Node head = CALLBACKS.getAndSet(this, DONE);
+		Node ordered = null;
+		while (head != null)
 		{
-			try {
-				wait(unit.toMillis(timeout));
-			} catch (Exception e) {
-				Thread.currentThread().interrupt();
+			Node next = head.next;
+			head.next = ordered;
+			ordered = head;
+			head = next;
+		}
+		for (Node n = ordered; n != null; n = n.next)
+		{
+			if (n.action == null)
+			{
+				Thread waiter = n.waiter;
+				if (waiter != null)
+					LockSupport.unpark(waiter);
+				continue;
+			}
+			try
+			{
+				n.action.run(outcome);
+			}
+			catch (RuntimeException e)
+			{
+				// a faulty callback is its registrant's problem, not the completer's
+				Thread t = Thread.currentThread();
+				t.getUncaughtExceptionHandler().uncaughtException(t, e);
+			}
+		}
+	}
+
+	private void push(Node node)
+	{
+		while (true)
+		{
+			Node head = callbacks;
+			if (head == DONE)
+			{
+				if (node.action != null)
+					node.action.run(state);
+				return;
+			}
+			node.next = head;
+			if (CALLBACKS.compareAndSet(this, head, node))
+				return;
+		}
+	}
+
+	private Object await(boolean timed, long nanos)
+	{
+		Object s = state;
+		if (s != null)
+			return s;
+		if (timed && nanos <= 0)
+			return null;
+		Thread waiter = Thread.currentThread();
+		Node node = claimWaiter(waiter);
+		if (node == null)
+		{
+			node = new Node(null);
+			node.waiter = waiter;
+			push(node);
+		}
+		long deadline = timed ? System.nanoTime() + nanos : 0L;
+		try
+		{
+			while ((s = state) == null)
+			{
+				if (timed)
+				{
+					long left = deadline - System.nanoTime();
+					if (left <= 0)
+						break;
+					LockSupport.parkNanos(this, left);
+				}
+				else
+					LockSupport.park(this);
+				if (Thread.interrupted())
+				{
+					waiter.interrupt();
+					return state;
+				}
 			}
+			return s;
+		}
+		finally
+		{
+			// leave the node for the next waiter rather than stacking another
+			node.waiter = null;
+		}
+	}
+
+	/**
+	 * Takes over a waiter node no thread waits on any more, so that waiting
+	 * again and again, as timed {@link #get(long, TimeUnit)} calls in a loop
+	 * do, stacks no more nodes than there are threads waiting at once.
+	 * <p>
+	 * @return the node, now waking {@code waiter}, or null if there is none.
+	 */
+	private Node claimWaiter(Thread waiter)
+	{
+		for (Node n = callbacks; n != null && n != DONE; n = n.next)
+		{
+			if (n.action == null && n.waiter == null && WAITER.compareAndSet(n, null, waiter))
+				return n;
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T valueOf(Object s)
+	{
+		if (s == null || s == NIL || s instanceof Failure)
+			return null;
+		return (T) s;
+	}
+
+	private interface Action
+	{
+		void run(Object outcome);
+	}
+
+	/**
+	 * A callback, or, with no action, a waiter node that wakes the thread
+	 * waiting on it, if any.
+	 */
+	private static final class Node
+	{
+		private final Action action;
+		volatile Thread waiter;
+		private Node next;
+
+		private Node(Action action)
+		{
+			this.action = action;
+		}
+	}
+
+	private static final class Failure
+	{
+		private final Throwable cause;
+
+		private Failure(Throwable cause)
+		{
+			this.cause = cause;
 		}
-		return result;
 	}
 }
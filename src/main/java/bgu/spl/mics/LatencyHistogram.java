@@ -0,0 +1,99 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations in nanoseconds, in fixed memory.
+ * <p>
+ * Like an HdrHistogram, buckets are log-linear: every power of two is split
+ * into {@value #SUB_BUCKETS} equal buckets, so a recorded value is known to
+ * within 1/{@value #SUB_BUCKETS} of itself whatever its magnitude, and the
+ * whole range of a long takes {@code 64 * SUB_BUCKETS} counters. Any thread
+ * may record; reading while others record gives a close, not an exact, view.
+ */
+final class LatencyHistogram
+{
+	private static final int SUB_BITS = 4;
+	static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a duration; negative ones count as 0.
+	 */
+	void record(long nanos)
+	{
+		nanos = Math.max(0, nanos);
+		counts.incrementAndGet(bucket(nanos));
+		total.addAndGet(nanos);
+		long m;
+		while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos))
+			;
+	}
+
+	/**
+	 * @return the number of durations recorded.
+	 */
+	long count()
+	{
+		long n = 0;
+		for (int i = 0; i < counts.length(); i++)
+			n += counts.get(i);
+		return n;
+	}
+
+	long max()
+	{
+		return max.get();
+	}
+
+	double mean()
+	{
+		long n = count();
+		return n == 0 ? 0 : (double) total.get() / n;
+	}
+
+	/**
+	 * @param percentile Between 0 and 100.
+	 * @return the upper bound of the bucket holding the given percentile of
+	 *         the durations recorded, 0 if there are none.
+	 */
+	long percentile(double percentile)
+	{
+		long n = count();
+		if (n == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(n * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++)
+		{
+			seen += counts.get(i);
+			if (seen >= rank)
+				return Math.min(upperBound(i), max());
+		}
+		return max();
+	}
+
+	static int bucket(long nanos)
+	{
+		if (nanos < SUB_BUCKETS)
+			return (int) nanos;
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+		int sub = (int) (nanos >>> exponent) - SUB_BUCKETS;
+		return (exponent + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long upperBound(int bucket)
+	{
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		int exponent = bucket / SUB_BUCKETS - 1;
+		long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+		long bound = (sub + 1) << exponent;
+		// the last buckets reach past the largest long
+		return bound <= 0 ? Long.MAX_VALUE : bound - 1;
+	}
+}
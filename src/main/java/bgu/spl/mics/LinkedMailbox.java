@@ -0,0 +1,82 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Mailbox} backed by a {@link LinkedBlockingQueue}.
+ */
+class LinkedMailbox implements Mailbox
+{
+	private final LinkedBlockingQueue<Message> queue;
+	private final Backpressure backpressure;
+	private final AtomicLong dropped;
+
+	LinkedMailbox(int capacity, Backpressure backpressure)
+	{
+		this.queue = new LinkedBlockingQueue<>(capacity);
+		this.backpressure = backpressure;
+		this.dropped = new AtomicLong();
+	}
+
+	@Override
+	public boolean offer(Message m)
+	{
+		if (queue.offer(m))
+			return true;
+		switch (backpressure)
+		{
+			case DROP_OLDEST:
+				do
+				{
+					Message evicted = queue.poll();
+					if (evicted != null)
+					{
+						dropped.incrementAndGet();
+						AcknowledgedBroadcast.release(evicted);
+					}
+				}
+				while (!queue.offer(m));
+				return true;
+			case BLOCK:
+				try
+				{
+					queue.put(m);
+					return true;
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				break;
+			default:
+				break;
+		}
+		dropped.incrementAndGet();
+		return false;
+	}
+
+	@Override
+	public Message take() throws InterruptedException
+	{
+		return queue.take();
+	}
+
+	@Override
+	public Message poll()
+	{
+		return queue.poll();
+	}
+
+	@Override
+	public int size()
+	{
+		return queue.size();
+	}
+
+	@Override
+	public long dropped()
+	{
+		return dropped.get();
+	}
+}
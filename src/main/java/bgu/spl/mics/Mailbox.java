@@ -0,0 +1,128 @@
+package bgu.spl.mics;
+
+import java.util.function.Predicate;
+
+/**
+ * The message-queue the {@link MessageBus} allocates for a registered
+ * {@link MicroService}. Any thread may add messages, only the micro-service
+ * itself takes them.
+ * <p>
+ * A micro-service chooses its mailbox by overriding
+ * {@link MicroService#createMailbox()}; the default is an unbounded linked
+ * queue.
+ */
+public interface Mailbox {
+
+    /**
+     * Adds {@code m} to the mailbox, applying the mailbox's {@link Backpressure}
+     * if it is full.
+     * <p>
+     * @param m The message to add.
+     * @return true if {@code m} was added, false if it was discarded.
+     */
+    boolean offer(Message m);
+
+    /**
+     * Adds {@code m} to the mailbox, unless a message of the same type is
+     * already waiting, in which case {@code m} takes its place: only the
+     * newest message of the type is delivered. Mailboxes that do not support
+     * this add {@code m} as {@link #offer(Message)} does.
+     * <p>
+     * @param m The message to add.
+     * @return true if {@code m} was added, false if it was discarded.
+     */
+    default boolean offerLatest(Message m)
+    {
+        return offer(m);
+    }
+
+    /**
+     * Takes the next message, waiting until one is available.
+     * <p>
+     * @return the next message.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    Message take() throws InterruptedException;
+
+    /**
+     * Takes the waiting messages into {@code batch}, waiting until there is at
+     * least one. At most {@code batch.length} messages are taken.
+     * <p>
+     * @param batch Receives the messages, starting at index 0.
+     * @return the number of messages taken.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    default int take(Message[] batch) throws InterruptedException
+    {
+        batch[0] = take();
+        int n = 1;
+        Message m;
+        while (n < batch.length && (m = poll()) != null)
+            batch[n++] = m;
+        return n;
+    }
+
+    /**
+     * Takes the next message if there is one, without waiting.
+     * <p>
+     * @return the next message, or null if the mailbox is empty.
+     */
+    Message poll();
+
+    /**
+     * @return the number of messages currently waiting.
+     */
+    int size();
+
+    /**
+     * @return the number of messages discarded so far because the mailbox was
+     *         full, whether rejected or evicted.
+     */
+    long dropped();
+
+    /**
+     * @return an unbounded linked mailbox.
+     */
+    static Mailbox linked()
+    {
+        return new LinkedMailbox(Integer.MAX_VALUE, Backpressure.BLOCK);
+    }
+
+    /**
+     * @param capacity     The maximal number of waiting messages.
+     * @param backpressure What to do with messages arriving while full.
+     * @return a bounded linked mailbox.
+     */
+    static Mailbox linked(int capacity, Backpressure backpressure)
+    {
+        return new LinkedMailbox(capacity, backpressure);
+    }
+
+    /**
+     * @param capacity     The maximal number of waiting messages, rounded up to
+     *                     a power of two, at least 2.
+     * @param backpressure What to do with messages arriving while full.
+     * @return a bounded mailbox backed by a preallocated lock-free ring buffer.
+     */
+    static Mailbox ring(int capacity, Backpressure backpressure)
+    {
+        return new RingMailbox(capacity, backpressure);
+    }
+
+    /**
+     * Returns a mailbox in which urgent messages are taken before any other
+     * waiting message. Urgent messages are never discarded; the capacity and
+     * backpressure apply to the other messages only.
+     * <p>
+     * @param capacity     The maximal number of waiting non-urgent messages,
+     *                     rounded up to a power of two, at least 2.
+     * @param backpressure What to do with non-urgent messages arriving while
+     *                     full.
+     * @param urgent       Tells which messages are urgent.
+     * @return the priority mailbox.
+     */
+    static Mailbox priority(int capacity, Backpressure backpressure, Predicate<Message> urgent)
+    {
+        return new PriorityMailbox(capacity, backpressure, urgent);
+    }
+}
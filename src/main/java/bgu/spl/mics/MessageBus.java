@@ -93,5 +93,23 @@ public interface MessageBus {
      *                              to became available.
      */
     Message awaitMessage(MicroService m) throws InterruptedException;
-    
+
+    /**
+     * Like {@link #awaitMessage(bgu.spl.mics.MicroService)}, but takes every
+     * message already waiting in {@code m}'s queue, up to
+     * {@code batch.length}, with a single wait.
+     * <p>
+     * @param m     The micro-service requesting to take messages from its
+     *              message queue.
+     * @param batch Receives the messages, starting at index 0.
+     * @return the number of messages taken, at least 1.
+     * @throws InterruptedException if interrupted while waiting for a message
+     *                              to became available.
+     */
+    default int awaitMessages(MicroService m, Message[] batch) throws InterruptedException
+    {
+        batch[0] = awaitMessage(m);
+        return 1;
+    }
+
 }
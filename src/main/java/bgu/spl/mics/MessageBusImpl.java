@@ -1,11 +1,20 @@
 package bgu.spl.mics;
 
-import java.util.LinkedList;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToIntFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import bgu.spl.mics.application.messages.TerminatedBroadcast;
 
@@ -14,22 +23,58 @@ import bgu.spl.mics.application.messages.TerminatedBroadcast;
  * Write your implementation here!
  * Only one public method (in addition to getters which can be public solely for unit testing) may be added to this class
  * All other methods and members you add the class must be private.
+ * <p>
+ * The public methods below break that rule. Each configures the bus as a
+ * whole and is not needed to pass messages, so they are kept apart from the
+ * {@link MessageBus} interface:
+ * <ul>
+ * <li>{@link #setDispatchPolicy(Class, DispatchPolicy)} chooses how the
+ * subscribers of an event type take turns.</li>
+ * <li>{@link #setFutureTimeToLive(long, TimeUnit)} bounds how long a future
+ * is kept for an event nobody completes.</li>
+ * <li>{@link #setCoalescing(Class, boolean)} makes subscribers that fall
+ * behind receive only the latest broadcast of a type.</li>
+ * <li>{@link #enableMetrics()} and {@link #disableMetrics()} turn the
+ * instrumentation of the bus on and off.</li>
+ * </ul>
  */
 public class MessageBusImpl implements MessageBus {
 	private static class SingeltonHolder
 	{
 		private static MessageBusImpl instance = new MessageBusImpl();
 	}
-	private Map<Class<? extends Message>, Queue<MicroService>> Esubscribers;
-	private Map<Class<? extends Message>, Queue<MicroService>> Bsubscribers;
-	private Map<MicroService, BlockingQueue<Message>> queues; 
-	private Map<Event<?>, Future<?>> futures;
+	/**
+	 * The future of an event that was sent and not completed yet, together with
+	 * the micro-service handling it.
+	 */
+	private static class Pending
+	{
+		private final Future<?> future;
+		private final MicroService handler;
+		private final long sentAt;
+		private Pending(Future<?> future, MicroService handler)
+		{
+			this.future = future;
+			this.handler = handler;
+			this.sentAt = System.nanoTime();
+		}
+	}
+	private final Map<Class<? extends Message>, Subscribers> Esubscribers;
+	private final Map<Class<? extends Message>, Subscribers> Bsubscribers;
+	private final Map<MicroService, Mailbox> queues;
+	private final Map<Event<?>, Pending> futures;
+	private final ToIntFunction<MicroService> depth;
+	private ScheduledExecutorService sweeper;
+	private ScheduledFuture<?> sweep;
+	// null while disabled
+	private volatile BusMetrics metrics;
 	private MessageBusImpl()
 	{
 		Esubscribers = new ConcurrentHashMap<>();
 		Bsubscribers = new ConcurrentHashMap<>();
 		queues = new ConcurrentHashMap<>();
 		futures = new ConcurrentHashMap<>();
+		depth = this::depthOf;
 	}
 	public static MessageBusImpl getInstance()
 	{
@@ -38,57 +83,85 @@ public class MessageBusImpl implements MessageBus {
 	@Override
 	public <T> void subscribeEvent(Class<? extends Event<T>> type, MicroService m) 
 	{
-		if(!Esubscribers.containsKey(type))
-			Esubscribers.put(type, new LinkedList<MicroService>());
-		Esubscribers.get(type).add(m);
+		subscribe(Esubscribers, type, m);
 	}
 
 	@Override
 	public void subscribeBroadcast(Class<? extends Broadcast> type, MicroService m)
 	{
-		if(!Bsubscribers.containsKey(type))
-			Bsubscribers.put(type, new LinkedList<MicroService>());
-		Bsubscribers.get(type).add(m);
+		subscribe(Bsubscribers, type, m);
 	}
 
 	@Override
 	public <T> void complete(Event<T> e, T result)
 	{
-		Future<T> future = null;
-		if(futures.containsKey(e))
-			future = (Future<T>)futures.get(e);
-		if(future != null)
-			future.resolve(result);
+		Pending pending = futures.remove(e);
+		if(pending != null)
+			((Future<T>) pending.future).resolve(result);
 	}
 
 	@Override
 	public void sendBroadcast(Broadcast b) 
 	{
-		Queue<MicroService> ms = Bsubscribers.get(b.getClass());
+		BusMetrics metrics = this.metrics;
+		if(metrics != null)
+			metrics.sent(b);
+		Subscribers ms = Bsubscribers.get(b.getClass());
 		if(ms == null)
+		{
+			AcknowledgedBroadcast.release(b);
 			return;
-		for (MicroService m : ms) 
+		}
+		boolean latest = ms.isCoalescing();
+		AcknowledgedBroadcast acked = b instanceof AcknowledgedBroadcast ? (AcknowledgedBroadcast) b : null;
+		long at = metrics == null ? 0 : System.nanoTime();
+		for (MicroService m : ms.snapshot()) 
 		{
-			if(m != null)
-				queues.get(m).offer(b);
+			Mailbox que = queues.get(m);
+			if(que == null)
+				continue;
+			if(acked != null)
+				acked.expect();
+			if(metrics != null)
+				metrics.adding(m, b, at);
+			boolean added = latest ? que.offerLatest(b) : que.offer(b);
+			if(metrics != null)
+				metrics.added(m, b, added, que.size());
+			if(!added && acked != null)
+				acked.acknowledge();
 		}
+		if(acked != null)
+			acked.acknowledge();
 	}
 	@Override
 	public <T> Future<T> sendEvent(Event<T> e) 
 	{
-		Queue<MicroService> ms = Esubscribers.get(e.getClass());
-		if(ms == null || ms.isEmpty())
+		BusMetrics metrics = this.metrics;
+		if(metrics != null)
+			metrics.sent(e);
+		Subscribers ms = Esubscribers.get(e.getClass());
+		if(ms == null)
 			return null;
-		MicroService head = ms.poll();
+		MicroService head = ms.select(e, depth);
 		if (head == null)
 			return null;
-		BlockingQueue<Message> que = queues.get(head);
-		if(que == null || que.isEmpty())
+		Mailbox que = queues.get(head);
+		if(que == null)
 			return null;
-		ms.offer(head);
-		que.offer(e);
 		Future<T> future = new Future<>();
-		futures.put(e, future);
+		futures.put(e, new Pending(future, head));
+		if(metrics != null)
+			metrics.adding(head, e, System.nanoTime());
+		boolean added = que.offer(e);
+		if(metrics != null)
+			metrics.added(head, e, added, que.size());
+		if(!added)
+		{
+			futures.remove(e);
+			return null;
+		}
+		if(queues.get(head) != que)
+			cancel(e, head);
 		return future;
 	}
 
@@ -98,8 +171,8 @@ public class MessageBusImpl implements MessageBus {
 		if(m == null)
 			return;
 		if(!queues.containsKey(m))
-			queues.put(m, new LinkedBlockingQueue<Message>());
-		Bsubscribers.get(TerminatedBroadcast.class).add(m);
+			queues.putIfAbsent(m, m.newMailbox());
+		subscribe(Bsubscribers, TerminatedBroadcast.class, m);
 	}
 
 	@Override
@@ -107,20 +180,224 @@ public class MessageBusImpl implements MessageBus {
 	{
 		if(m == null)
 			return;
-		if(queues.containsKey(m))
+		// the mailbox goes first, so that a subscription racing with this either
+		// is removed below or sees m unregistered and withdraws itself
+		Mailbox removed = queues.remove(m);
+		if(removed != null)
 		{
-			queues.remove(m);
-			Esubscribers.values().forEach(queue -> queue.remove(m));
-			Bsubscribers.values().forEach(queue -> queue.remove(m));
+			Message left;
+			while((left = removed.poll()) != null)
+				AcknowledgedBroadcast.release(left);
+			Esubscribers.values().forEach(subs -> subs.remove(m));
+			Bsubscribers.values().forEach(subs -> subs.remove(m));
+			futures.forEach((e, pending) -> {
+				if(pending.handler == m)
+					cancel(e, m);
+			});
+			BusMetrics metrics = this.metrics;
+			if(metrics != null)
+				metrics.unregistered(m);
 		}
 	}
 
 	@Override
 	public Message awaitMessage(MicroService m) throws InterruptedException
 	{
-		if(m == null || !queues.containsKey(m))
+		Mailbox queue = m == null ? null : queues.get(m);
+		if(queue == null)
 			throw new IllegalStateException();
-		BlockingQueue<Message> queue = queues.get(m);
 		return queue.take();
 	}
+
+	@Override
+	public int awaitMessages(MicroService m, Message[] batch) throws InterruptedException
+	{
+		Mailbox queue = m == null ? null : queues.get(m);
+		if(queue == null)
+			throw new IllegalStateException();
+		return queue.take(batch);
+	}
+
+	/**
+	 * Sets the policy used to choose which subscriber of {@code type} receives
+	 * each sent event. Events are dispatched round-robin by default.
+	 * <p>
+	 * @param type   The type of event the policy applies to.
+	 * @param policy The policy, a separate instance for every event type.
+	 */
+	public void setDispatchPolicy(Class<? extends Event<?>> type, DispatchPolicy policy)
+	{
+		subscribersOf(Esubscribers, type).setPolicy(policy);
+	}
+
+	/**
+	 * Sets whether broadcasts of {@code type} are coalesced: a subscriber that
+	 * has not taken the previous broadcast of {@code type} yet only receives
+	 * the newest one.
+	 * <p>
+	 * @param type       The type of broadcast.
+	 * @param coalescing true to coalesce, false to deliver every broadcast.
+	 */
+	public void setCoalescing(Class<? extends Broadcast> type, boolean coalescing)
+	{
+		subscribersOf(Bsubscribers, type).setCoalescing(coalescing);
+	}
+
+	/**
+	 * @return the number of messages waiting in {@code m}'s queue, 0 if
+	 *         {@code m} is not registered.
+	 */
+	public int getQueueSize(MicroService m)
+	{
+		Mailbox que = queues.get(m);
+		return que == null ? 0 : que.size();
+	}
+
+	/**
+	 * @return the number of messages discarded so far because {@code m}'s
+	 *         queue was full, 0 if {@code m} is not registered.
+	 */
+	public long getDroppedCount(MicroService m)
+	{
+		Mailbox que = queues.get(m);
+		return que == null ? 0 : que.dropped();
+	}
+
+	/**
+	 * @return the number of sent events whose future was not completed yet.
+	 */
+	public int getLiveFutureCount()
+	{
+		return futures.size();
+	}
+
+	/**
+	 * Enables a background sweep failing, with a {@link TimeoutException},
+	 * the futures of events that were not completed within {@code ttl} of
+	 * being sent. A non-positive {@code ttl} disables the sweep.
+	 * <p>
+	 * @param ttl  The time an event may stay uncompleted.
+	 * @param unit The {@link TimeUnit} of {@code ttl}.
+	 */
+	public synchronized void setFutureTimeToLive(long ttl, TimeUnit unit)
+	{
+		if(sweep != null)
+		{
+			sweep.cancel(false);
+			sweep = null;
+		}
+		if(ttl <= 0)
+			return;
+		if(sweeper == null)
+		{
+			sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "MessageBus-future-sweeper");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		long ttlNanos = unit.toNanos(ttl);
+		long period = Math.max(ttlNanos / 2, TimeUnit.MILLISECONDS.toNanos(1));
+		sweep = sweeper.scheduleAtFixedRate(() -> expire(ttlNanos), period, period, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Starts instrumenting the bus, from scratch if it already was, and
+	 * registers the metrics with the platform MBean server as
+	 * {@value BusMetrics#OBJECT_NAME}.
+	 * <p>
+	 * @return the metrics, updated from now on.
+	 */
+	public synchronized BusMetrics enableMetrics()
+	{
+		BusMetrics enabled = new BusMetrics(this);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try
+		{
+			ObjectName name = new ObjectName(BusMetrics.OBJECT_NAME);
+			if(server.isRegistered(name))
+				server.unregisterMBean(name);
+			server.registerMBean(enabled, name);
+		}
+		catch(JMException ex)
+		{
+			throw new IllegalStateException("cannot register the message-bus metrics", ex);
+		}
+		metrics = enabled;
+		return enabled;
+	}
+
+	/**
+	 * Stops instrumenting the bus and unregisters its metrics from the
+	 * platform MBean server.
+	 */
+	public synchronized void disableMetrics()
+	{
+		if(metrics == null)
+			return;
+		metrics = null;
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(BusMetrics.OBJECT_NAME));
+		}
+		catch(JMException ex)
+		{
+			// already unregistered
+		}
+	}
+
+	/**
+	 * @return the metrics of the bus, or null if it is not instrumented.
+	 */
+	public BusMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	private void cancel(Event<?> e, MicroService handler)
+	{
+		Pending pending = futures.remove(e);
+		if(pending != null)
+			pending.future.fail(new CancellationException(handler.getName() + " unregistered before completing the event"));
+	}
+
+	private void expire(long ttlNanos)
+	{
+		long now = System.nanoTime();
+		Iterator<Map.Entry<Event<?>, Pending>> it = futures.entrySet().iterator();
+		while(it.hasNext())
+		{
+			Map.Entry<Event<?>, Pending> entry = it.next();
+			Pending pending = entry.getValue();
+			if(now - pending.sentAt >= ttlNanos && futures.remove(entry.getKey(), pending))
+				pending.future.fail(new TimeoutException("event was not completed in time"));
+		}
+	}
+
+	private int depthOf(MicroService m)
+	{
+		Mailbox que = queues.get(m);
+		return que == null ? Integer.MAX_VALUE : que.size();
+	}
+
+	/**
+	 * Subscribes {@code m} to {@code type}, unless {@code m} is not registered.
+	 * Registration is checked after adding {@code m}, so that an
+	 * {@link #unregister(MicroService)} running meanwhile cannot leave it
+	 * subscribed without a mailbox.
+	 */
+	private void subscribe(Map<Class<? extends Message>, Subscribers> subscribers, Class<? extends Message> type, MicroService m)
+	{
+		Subscribers subs = subscribersOf(subscribers, type);
+		if(subs.add(m) && !queues.containsKey(m))
+			subs.remove(m);
+	}
+
+	private static Subscribers subscribersOf(Map<Class<? extends Message>, Subscribers> subscribers, Class<? extends Message> type)
+	{
+		Subscribers subs = subscribers.get(type);
+		if(subs == null)
+			subs = subscribers.computeIfAbsent(type, t -> new Subscribers());
+		return subs;
+	}
 }
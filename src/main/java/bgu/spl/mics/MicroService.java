@@ -1,7 +1,9 @@
 package bgu.spl.mics;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
 
 import bgu.spl.mics.application.messages.TerminatedBroadcast;
 
@@ -22,14 +24,29 @@ import bgu.spl.mics.application.messages.TerminatedBroadcast;
  * 
  * Only private fields and methods may be added to this class.
  * <p>
+ * The members below break that rule. Each is a hook that subclasses or the
+ * rest of the framework cannot do without:
+ * <ul>
+ * <li>{@link #createMailbox()} is protected, so that a micro-service can
+ * choose a bounded or priority mailbox.</li>
+ * <li>{@code run(Runnable)}, {@code start()}, {@code process(Mailbox, int)},
+ * {@code finish()}, {@code isTerminated()}, {@code decorateMailbox} and
+ * {@code newMailbox()} are package-private, so that a {@link ServiceExecutor}
+ * can drive the event loop in any {@link ExecutionMode}.</li>
+ * <li>{@link #coalesceBroadcasts(Class)} is protected, a wrapper around
+ * the message-bus like {@link #sendBroadcast(Broadcast)}.</li>
+ * </ul>
  */
 public abstract class MicroService implements Runnable {
 
-    private boolean terminated = false;
+    private static final int BATCH_SIZE = 64;
+
+    private volatile boolean terminated = false;
     private final String name;
-    private Map<Class<? extends Message>, Callback<?>> Ecallback;
-    private Map<Class<? extends Message>, Callback<?>> Bcallback;
-    
+    private final DispatchTable callbacks;
+    private UnaryOperator<Mailbox> mailboxDecorator;
+    // broadcast types this micro-service made the bus coalesce
+    private final List<Class<? extends Broadcast>> coalesced = new ArrayList<>();
 
     /**
      * @param name the micro-service name (used mainly for debugging purposes -
@@ -38,8 +55,7 @@ public abstract class MicroService implements Runnable {
     public MicroService(String name)
     {
         this.name = name;
-        this.Ecallback = new ConcurrentHashMap<>();
-        this.Bcallback = new ConcurrentHashMap<>();
+        this.callbacks = new DispatchTable();
     }
 
     /**
@@ -66,7 +82,7 @@ public abstract class MicroService implements Runnable {
     protected final <T, E extends Event<T>> void subscribeEvent(Class<E> type, Callback<E> callback)
     {
         MessageBusImpl mBusImpl = MessageBusImpl.getInstance();
-        Ecallback.put(type, callback);
+        callbacks.put(type, callback);
         mBusImpl.subscribeEvent(type, this);
     }
 
@@ -93,7 +109,7 @@ public abstract class MicroService implements Runnable {
     public final <B extends Broadcast> void subscribeBroadcast(Class<B> type, Callback<B> callback) // Change to protected
     {
         MessageBusImpl mBusImpl = MessageBusImpl.getInstance();
-        Bcallback.put(type, callback);
+        callbacks.put(type, callback);
         mBusImpl.subscribeBroadcast(type, this);
     }
 
@@ -127,6 +143,21 @@ public abstract class MicroService implements Runnable {
         mBusImpl.sendBroadcast(b);
     }
 
+    /**
+     * Makes the message-bus coalesce broadcasts of type {@code type}: a
+     * subscriber that has not handled the previous one yet receives only the
+     * newest instead of all of them. The bus delivers every broadcast of
+     * {@code type} again once this micro-service terminates.
+     * <p>
+     * @param type The type of broadcast message to coalesce.
+     */
+    protected final void coalesceBroadcasts(Class<? extends Broadcast> type)
+    {
+        MessageBusImpl mBusImpl = MessageBusImpl.getInstance();
+        mBusImpl.setCoalescing(type, true);
+        coalesced.add(type);
+    }
+
     /**
      * Completes the received request {@code e} with the result {@code result}
      * using the message-bus.
@@ -143,6 +174,18 @@ public abstract class MicroService implements Runnable {
         mBusImpl.complete(e, result);
     }
 
+    /**
+     * Creates the message-queue the message-bus allocates for this
+     * micro-service when it registers. Override to use a bounded or priority
+     * {@link Mailbox} instead of the default unbounded one.
+     * <p>
+     * @return the mailbox of this micro-service.
+     */
+    protected Mailbox createMailbox()
+    {
+        return Mailbox.linked();
+    }
+
     /**
      * this method is called once when the event loop starts.
      */
@@ -173,27 +216,150 @@ public abstract class MicroService implements Runnable {
     @Override
     public final void run()
     {
-        MessageBusImpl.getInstance().register(this);
-        initialize();
+        run(null);
+    }
+
+    /**
+     * Runs the event loop, calling {@code started} once this micro-service
+     * has registered and initialized, before it handles any message.
+     */
+    final void run(Runnable started)
+    {
+        start();
+        if (started != null)
+            started.run();
+        MessageBusImpl mBusImpl = MessageBusImpl.getInstance();
+        Message[] batch = new Message[BATCH_SIZE];
         while (!terminated)
         {
+            int n = 0;
+            int next = 0;
             try
             {
-                MessageBusImpl mBusImpl = MessageBusImpl.getInstance();
-                Message m = mBusImpl.awaitMessage(this);
-                if(m instanceof Event)
-                {
-                    Callback<Message> callback = (Callback<Message>)Ecallback.get(m.getClass());
-                    if (callback != null)
-                        callback.call(m);
-                }
+                n = mBusImpl.awaitMessages(this, batch);
+                while (next < n && !terminated)
+                    handle(batch[next++]);
             } 
-            catch (Exception e)
+            catch (InterruptedException e)
             {
                 Thread.currentThread().interrupt();
                 terminate();
             }
+            catch (RuntimeException e)
+            {
+                report(e);
+                terminate();
+            }
+            while (next < n)
+                AcknowledgedBroadcast.release(batch[next++]);
+            Arrays.fill(batch, 0, n, null);
+        }
+        finish();
+    }
+
+    /**
+     * Registers this micro-service and calls {@link #initialize()}; the first
+     * step of the event loop.
+     */
+    final void start()
+    {
+        MessageBusImpl.getInstance().register(this);
+        try
+        {
+            initialize();
+        }
+        catch (RuntimeException e)
+        {
+            report(e);
+            terminate();
+        }
+    }
+
+    /**
+     * Handles up to {@code max} messages already waiting in {@code mailbox}
+     * without blocking. Used when the event loop is driven by a
+     * {@link ServiceExecutor} pool rather than by {@link #run()}.
+     */
+    final void process(Mailbox mailbox, int max)
+    {
+        try
+        {
+            for (int i = 0; i < max && !terminated; i++)
+            {
+                Message m = mailbox.poll();
+                if (m == null)
+                    return;
+                handle(m);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            report(e);
+            terminate();
+        }
+    }
+
+    /**
+     * Hands {@code e}, thrown by {@link #initialize()}, a callback or the
+     * message-bus, to the uncaught-exception handler of the current thread,
+     * so that the failure is not lost when this micro-service terminates on
+     * it. Every execution mode reports failures this way.
+     */
+    private static void report(RuntimeException e)
+    {
+        Thread t = Thread.currentThread();
+        t.getUncaughtExceptionHandler().uncaughtException(t, e);
+    }
+
+    /**
+     * Unregisters this micro-service and stops the coalescing it turned on;
+     * the last step of the event loop.
+     */
+    final void finish()
+    {
+        MessageBusImpl mBusImpl = MessageBusImpl.getInstance();
+        for (Class<? extends Broadcast> type : coalesced)
+            mBusImpl.setCoalescing(type, false);
+        coalesced.clear();
+        mBusImpl.unregister(this);
+    }
+
+    final boolean isTerminated()
+    {
+        return terminated;
+    }
+
+    /**
+     * Makes the message-bus wrap the mailbox of this micro-service with
+     * {@code decorator} when it registers.
+     */
+    final void decorateMailbox(UnaryOperator<Mailbox> decorator)
+    {
+        this.mailboxDecorator = decorator;
+    }
+
+    /**
+     * @return the mailbox to allocate for this micro-service.
+     */
+    final Mailbox newMailbox()
+    {
+        Mailbox mailbox = new CoalescingMailbox(createMailbox());
+        return mailboxDecorator == null ? mailbox : mailboxDecorator.apply(mailbox);
+    }
+
+    private void handle(Message m)
+    {
+        BusMetrics metrics = MessageBusImpl.getInstance().getMetrics();
+        long since = metrics == null ? 0 : metrics.taken(this, m);
+        try
+        {
+            callbacks.dispatch(m);
+        }
+        finally
+        {
+            if (metrics != null)
+                metrics.handled(this, since);
+            AcknowledgedBroadcast.release(m);
         }
-        MessageBusImpl.getInstance().unregister(this);
     }
 }
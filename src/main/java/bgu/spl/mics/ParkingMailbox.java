@@ -0,0 +1,113 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Base of the lock-free mailboxes. Subclasses provide non-blocking
+ * {@link #tryOffer(Message)} and {@link #poll()}; this class adds the
+ * backpressure handling and parks the receiving micro-service while the
+ * mailbox is empty.
+ */
+abstract class ParkingMailbox implements Mailbox
+{
+	private static final long BLOCK_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private final Backpressure backpressure;
+	private final AtomicLong dropped;
+	private volatile Thread waiter;
+
+	ParkingMailbox(Backpressure backpressure)
+	{
+		this.backpressure = backpressure;
+		this.dropped = new AtomicLong();
+	}
+
+	/**
+	 * Adds {@code m} if there is room for it, without waiting.
+	 */
+	abstract boolean tryOffer(Message m);
+
+	/**
+	 * Removes the oldest message that may be discarded to make room.
+	 * <p>
+	 * @return the discarded message, or null if there is none.
+	 */
+	abstract Message evict();
+
+	@Override
+	public boolean offer(Message m)
+	{
+		if (!enqueue(m))
+		{
+			dropped.incrementAndGet();
+			return false;
+		}
+		Thread w = waiter;
+		if (w != null)
+			LockSupport.unpark(w);
+		return true;
+	}
+
+	@Override
+	public Message take() throws InterruptedException
+	{
+		Message m = poll();
+		if (m != null)
+			return m;
+		waiter = Thread.currentThread();
+		try
+		{
+			while ((m = poll()) == null)
+			{
+				if (Thread.interrupted())
+					throw new InterruptedException();
+				LockSupport.park(this);
+			}
+			return m;
+		}
+		finally
+		{
+			waiter = null;
+		}
+	}
+
+	@Override
+	public long dropped()
+	{
+		return dropped.get();
+	}
+
+	private boolean enqueue(Message m)
+	{
+		if (tryOffer(m))
+			return true;
+		switch (backpressure)
+		{
+			case DROP_OLDEST:
+				do
+				{
+					Message evicted = evict();
+					if (evicted != null)
+					{
+						dropped.incrementAndGet();
+						AcknowledgedBroadcast.release(evicted);
+					}
+				}
+				while (!tryOffer(m));
+				return true;
+			case BLOCK:
+				do
+				{
+					if (Thread.currentThread().isInterrupted())
+						return false;
+					LockSupport.parkNanos(this, BLOCK_BACKOFF_NANOS);
+				}
+				while (!tryOffer(m));
+				return true;
+			default:
+				return false;
+		}
+	}
+}
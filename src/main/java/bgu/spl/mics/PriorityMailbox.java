@@ -0,0 +1,54 @@
+package bgu.spl.mics;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
+
+/**
+ * A {@link Mailbox} with two lanes: urgent messages (e.g. termination
+ * broadcasts) wait in an unbounded lane that is always emptied first, all
+ * other messages wait in a bounded {@link RingBuffer}.
+ */
+class PriorityMailbox extends ParkingMailbox
+{
+	private final Queue<Message> urgent;
+	private final RingBuffer normal;
+	private final Predicate<Message> isUrgent;
+
+	PriorityMailbox(int capacity, Backpressure backpressure, Predicate<Message> isUrgent)
+	{
+		super(backpressure);
+		this.urgent = new ConcurrentLinkedQueue<>();
+		this.normal = new RingBuffer(capacity);
+		this.isUrgent = isUrgent;
+	}
+
+	@Override
+	boolean tryOffer(Message m)
+	{
+		if (isUrgent.test(m))
+			return urgent.offer(m);
+		return normal.offer(m);
+	}
+
+	@Override
+	public Message poll()
+	{
+		Message m = urgent.poll();
+		if (m != null)
+			return m;
+		return normal.poll();
+	}
+
+	@Override
+	Message evict()
+	{
+		return normal.poll();
+	}
+
+	@Override
+	public int size()
+	{
+		return urgent.size() + normal.size();
+	}
+}
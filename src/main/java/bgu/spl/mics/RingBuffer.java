@@ -0,0 +1,96 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, array-backed, lock-free queue of messages.
+ * <p>
+ * Every slot carries a sequence number telling whether it is free for the
+ * producer of a given position or holds the message for the consumer of that
+ * position (D. Vyukov's bounded queue). Producers and consumers only
+ * compete on their own position counter, and no node is allocated per
+ * message.
+ */
+class RingBuffer
+{
+	private final Message[] buffer;
+	private final AtomicLongArray sequence;
+	private final int mask;
+	private final AtomicLong head;
+	private final AtomicLong tail;
+
+	RingBuffer(int capacity)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive");
+		// with a single slot, a full slot has the sequence of an empty one
+		int size = Math.max(2, Integer.highestOneBit(capacity));
+		if (size < capacity)
+			size <<= 1;
+		buffer = new Message[size];
+		sequence = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+			sequence.set(i, i);
+		mask = size - 1;
+		head = new AtomicLong();
+		tail = new AtomicLong();
+	}
+
+	boolean offer(Message m)
+	{
+		long pos = tail.get();
+		while (true)
+		{
+			int slot = (int) pos & mask;
+			long diff = sequence.get(slot) - pos;
+			if (diff == 0)
+			{
+				if (tail.compareAndSet(pos, pos + 1))
+				{
+					buffer[slot] = m;
+					sequence.set(slot, pos + 1);
+					return true;
+				}
+				pos = tail.get();
+			}
+			else if (diff < 0)
+				return false;
+			else
+				pos = tail.get();
+		}
+	}
+
+	Message poll()
+	{
+		long pos = head.get();
+		while (true)
+		{
+			int slot = (int) pos & mask;
+			long diff = sequence.get(slot) - (pos + 1);
+			if (diff == 0)
+			{
+				if (head.compareAndSet(pos, pos + 1))
+				{
+					Message m = buffer[slot];
+					buffer[slot] = null;
+					sequence.set(slot, pos + mask + 1);
+					return m;
+				}
+				pos = head.get();
+			}
+			else if (diff < 0)
+				return null;
+			else
+				pos = head.get();
+		}
+	}
+
+	int size()
+	{
+		long size = tail.get() - head.get();
+		if (size < 0)
+			return 0;
+		return (int) Math.min(size, buffer.length);
+	}
+}
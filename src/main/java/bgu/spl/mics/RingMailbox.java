@@ -0,0 +1,39 @@
+package bgu.spl.mics;
+
+/**
+ * A bounded {@link Mailbox} backed by a preallocated {@link RingBuffer}.
+ */
+class RingMailbox extends ParkingMailbox
+{
+	private final RingBuffer ring;
+
+	RingMailbox(int capacity, Backpressure backpressure)
+	{
+		super(backpressure);
+		this.ring = new RingBuffer(capacity);
+	}
+
+	@Override
+	boolean tryOffer(Message m)
+	{
+		return ring.offer(m);
+	}
+
+	@Override
+	public Message poll()
+	{
+		return ring.poll();
+	}
+
+	@Override
+	Message evict()
+	{
+		return ring.poll();
+	}
+
+	@Override
+	public int size()
+	{
+		return ring.size();
+	}
+}
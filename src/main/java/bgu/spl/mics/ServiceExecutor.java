@@ -0,0 +1,265 @@
+package bgu.spl.mics;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts micro-services and runs their event loops according to an
+ * {@link ExecutionMode}.
+ */
+public class ServiceExecutor
+{
+	private static final int POOLED_BATCH = 64;
+
+	private final ExecutionMode mode;
+	private final ExecutorService pool;
+	private final List<CompletableFuture<Void>> running;
+	private final List<CompletableFuture<Void>> initialized;
+
+	/**
+	 * @param mode     How to run the micro-services.
+	 * @param poolSize The number of worker threads in {@link ExecutionMode#POOLED}
+	 *                 mode, ignored otherwise.
+	 */
+	public ServiceExecutor(ExecutionMode mode, int poolSize)
+	{
+		this.mode = mode;
+		this.running = new ArrayList<>();
+		this.initialized = new ArrayList<>();
+		if (mode == ExecutionMode.POOLED)
+		{
+			AtomicInteger count = new AtomicInteger();
+			this.pool = Executors.newFixedThreadPool(poolSize, r -> {
+				Thread t = new Thread(r, "ServiceExecutor-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		else
+			this.pool = null;
+	}
+
+	/**
+	 * Starts the event loop of {@code m}.
+	 */
+	public void execute(MicroService m)
+	{
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		CompletableFuture<Void> started = new CompletableFuture<>();
+		synchronized (running)
+		{
+			running.add(done);
+			initialized.add(started);
+		}
+		if (mode == ExecutionMode.POOLED)
+		{
+			new PooledService(m, started, done).schedule();
+			return;
+		}
+		Runnable loop = () -> {
+			try
+			{
+				m.run(() -> started.complete(null));
+			}
+			finally
+			{
+				started.complete(null);
+				done.complete(null);
+			}
+		};
+		Thread t = mode == ExecutionMode.VIRTUAL_THREAD ? newVirtualThread(loop) : new Thread(loop);
+		if (mode == ExecutionMode.THREAD_PER_SERVICE)
+			t.setName(m.getName());
+		t.start();
+	}
+
+	/**
+	 * Waits until every micro-service started so far has registered and
+	 * initialized, so that it receives every message sent from now on.
+	 * <p>
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public void awaitInitialization() throws InterruptedException
+	{
+		CompletableFuture<?>[] all;
+		synchronized (running)
+		{
+			all = initialized.toArray(new CompletableFuture<?>[0]);
+		}
+		try
+		{
+			CompletableFuture.allOf(all).get();
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Waits until every micro-service started so far has terminated.
+	 * <p>
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public void awaitTermination() throws InterruptedException
+	{
+		CompletableFuture<?>[] all;
+		synchronized (running)
+		{
+			all = running.toArray(new CompletableFuture<?>[0]);
+		}
+		try
+		{
+			CompletableFuture.allOf(all).get();
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Releases the worker threads of the pool. Micro-services still running
+	 * in {@link ExecutionMode#POOLED} mode stop being scheduled.
+	 */
+	public void shutdown()
+	{
+		if (pool != null)
+			pool.shutdownNow();
+	}
+
+	private static Thread newVirtualThread(Runnable task)
+	{
+		try
+		{
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Method unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+			return (Thread) unstarted.invoke(builder, task);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			return new Thread(task);
+		}
+	}
+
+	/**
+	 * Drives the event loop of one micro-service on the pool. The micro-service
+	 * is submitted to the pool when a message arrives in its empty mailbox,
+	 * handles a batch of messages and goes back to idle, so a pool worker is
+	 * never parked waiting for it.
+	 */
+	private class PooledService implements Runnable
+	{
+		private static final int IDLE = 0;
+		private static final int SCHEDULED = 1;
+
+		private final MicroService service;
+		private final CompletableFuture<Void> initialized;
+		private final CompletableFuture<Void> done;
+		private final AtomicInteger state;
+		private volatile Mailbox mailbox;
+		private boolean started;
+
+		private PooledService(MicroService service, CompletableFuture<Void> initialized, CompletableFuture<Void> done)
+		{
+			this.service = service;
+			this.initialized = initialized;
+			this.done = done;
+			this.state = new AtomicInteger(IDLE);
+			service.decorateMailbox(this::wrap);
+		}
+
+		private void schedule()
+		{
+			if (!state.compareAndSet(IDLE, SCHEDULED))
+				return;
+			try
+			{
+				pool.execute(this);
+			}
+			catch (RejectedExecutionException e)
+			{
+				// the executor was shut down, the micro-service will not run again
+			}
+		}
+
+		@Override
+		public void run()
+		{
+			if (!started)
+			{
+				started = true;
+				service.start();
+				initialized.complete(null);
+			}
+			else
+				service.process(mailbox, POOLED_BATCH);
+			if (service.isTerminated())
+			{
+				service.finish();
+				done.complete(null);
+				return;
+			}
+			state.set(IDLE);
+			if (mailbox.size() > 0)
+				schedule();
+		}
+
+		private Mailbox wrap(Mailbox inner)
+		{
+			Mailbox outer = new Mailbox()
+			{
+				@Override
+				public boolean offer(Message m)
+				{
+					boolean added = inner.offer(m);
+					if (added)
+						schedule();
+					return added;
+				}
+
+				@Override
+				public boolean offerLatest(Message m)
+				{
+					boolean added = inner.offerLatest(m);
+					if (added)
+						schedule();
+					return added;
+				}
+
+				@Override
+				public Message take() throws InterruptedException
+				{
+					return inner.take();
+				}
+
+				@Override
+				public Message poll()
+				{
+					return inner.poll();
+				}
+
+				@Override
+				public int size()
+				{
+					return inner.size();
+				}
+
+				@Override
+				public long dropped()
+				{
+					return inner.dropped();
+				}
+			};
+			mailbox = outer;
+			return outer;
+		}
+	}
+}
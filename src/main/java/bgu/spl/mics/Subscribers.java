@@ -0,0 +1,126 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToIntFunction;
+
+/**
+ * The micro-services subscribed to a single message type.
+ * <p>
+ * Subscribers are kept in an immutable array that is replaced as a whole
+ * (copy-on-write) whenever a micro-service subscribes or unsubscribes, so
+ * senders only ever read a stable snapshot and never lock or allocate.
+ * Subscribing is rare compared to sending, which makes the copy cheap overall.
+ * <p>
+ * Events are handed to one of the subscribers according to the type's
+ * {@link DispatchPolicy}, round-robin unless configured otherwise.
+ */
+class Subscribers
+{
+	private static final MicroService[] EMPTY = new MicroService[0];
+
+	private final AtomicReference<MicroService[]> snapshot;
+	private volatile DispatchPolicy policy;
+	private volatile boolean coalescing;
+
+	Subscribers()
+	{
+		snapshot = new AtomicReference<>(EMPTY);
+		policy = DispatchPolicy.roundRobin();
+	}
+
+	void setPolicy(DispatchPolicy policy)
+	{
+		this.policy = policy;
+	}
+
+	void setCoalescing(boolean coalescing)
+	{
+		this.coalescing = coalescing;
+	}
+
+	/**
+	 * @return true if only the newest broadcast of this type should wait in a
+	 *         subscriber's queue.
+	 */
+	boolean isCoalescing()
+	{
+		return coalescing;
+	}
+
+	/**
+	 * @return the current subscribers. The returned array must not be modified.
+	 */
+	MicroService[] snapshot()
+	{
+		return snapshot.get();
+	}
+
+	/**
+	 * Adds {@code m} to the subscribers, if it is not already there.
+	 * <p>
+	 * @return true if {@code m} was added, false if it was already subscribed.
+	 */
+	boolean add(MicroService m)
+	{
+		while (true)
+		{
+			MicroService[] current = snapshot.get();
+			if (indexOf(current, m) >= 0)
+				return false;
+			MicroService[] next = new MicroService[current.length + 1];
+			System.arraycopy(current, 0, next, 0, current.length);
+			next[current.length] = m;
+			if (snapshot.compareAndSet(current, next))
+				return true;
+		}
+	}
+
+	/**
+	 * Removes {@code m} from the subscribers.
+	 * <p>
+	 * @return true if {@code m} was subscribed, false otherwise.
+	 */
+	boolean remove(MicroService m)
+	{
+		while (true)
+		{
+			MicroService[] current = snapshot.get();
+			int index = indexOf(current, m);
+			if (index < 0)
+				return false;
+			MicroService[] next = EMPTY;
+			if (current.length > 1)
+			{
+				next = new MicroService[current.length - 1];
+				System.arraycopy(current, 0, next, 0, index);
+				System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+			}
+			if (snapshot.compareAndSet(current, next))
+				return true;
+		}
+	}
+
+	/**
+	 * Picks the subscriber that should receive {@code e}.
+	 * <p>
+	 * @param depth the number of messages waiting in a subscriber's queue.
+	 * @return the chosen micro-service, or null if there are no subscribers.
+	 */
+	MicroService select(Event<?> e, ToIntFunction<MicroService> depth)
+	{
+		MicroService[] current = snapshot.get();
+		if (current.length == 0)
+			return null;
+		return current[policy.select(e, current, depth)];
+	}
+
+	private static int indexOf(MicroService[] array, MicroService m)
+	{
+		for (int i = 0; i < array.length; i++)
+		{
+			if (array[i] == m)
+				return i;
+		}
+		return -1;
+	}
+}
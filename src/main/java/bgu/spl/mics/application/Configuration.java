@@ -0,0 +1,248 @@
+package bgu.spl.mics.application;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+
+import bgu.spl.mics.ExecutionMode;
+import bgu.spl.mics.application.objects.PointCloud;
+
+/**
+ * The simulation's configuration file.
+ * <p>
+ * Data file paths in the configuration file are relative to the directory
+ * the configuration file is in; the getters return them resolved.
+ */
+public class Configuration
+{
+    public static class CameraConfiguration
+    {
+        private int id;
+        private int frequency;
+        @SerializedName("camera_key")
+        private String cameraKey;
+
+        public int getId()
+        {
+            return id;
+        }
+        public int getFrequency()
+        {
+            return frequency;
+        }
+        public String getCameraKey()
+        {
+            return cameraKey;
+        }
+    }
+
+    public static class LidarConfiguration
+    {
+        private int id;
+        private int frequency;
+
+        public int getId()
+        {
+            return id;
+        }
+        public int getFrequency()
+        {
+            return frequency;
+        }
+    }
+
+    private static class Cameras
+    {
+        @SerializedName("CamerasConfigurations")
+        private List<CameraConfiguration> configurations = new ArrayList<>();
+        @SerializedName("camera_datas_path")
+        private String dataPath;
+    }
+
+    private static class Lidars
+    {
+        @SerializedName("LidarConfigurations")
+        private List<LidarConfiguration> configurations = new ArrayList<>();
+        @SerializedName("lidars_data_path")
+        private String dataPath;
+    }
+
+    @SerializedName("Cameras")
+    private Cameras cameras = new Cameras();
+    @SerializedName(value = "Lidars", alternate = "LidarWorkers")
+    private Lidars lidars = new Lidars();
+    private String poseJsonFile;
+    @SerializedName("TickTime")
+    private int tickTime;
+    @SerializedName("Duration")
+    private int duration;
+    // optional, see TimeService
+    @SerializedName("VirtualTime")
+    private boolean virtualTime;
+    @SerializedName("CoalesceTicks")
+    private boolean coalesceTicks;
+    @SerializedName("CloudPointPrecision")
+    private PointCloud.Precision cloudPointPrecision;
+    @SerializedName("MetricsDumpInterval")
+    private int metricsDumpInterval;
+    @SerializedName("CheckpointInterval")
+    private int checkpointInterval;
+    @SerializedName("ExecutionMode")
+    private ExecutionMode executionMode;
+    @SerializedName("PoolSize")
+    private int poolSize;
+
+    private transient Path file;
+
+    /**
+     * Reads the configuration file at {@code path}.
+     *
+     * @param path The path to the configuration file.
+     * @return The parsed configuration.
+     * @throws IOException If the file cannot be read.
+     */
+    public static Configuration load(String path) throws IOException
+    {
+        Path file = Paths.get(path).toAbsolutePath();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+        {
+            Configuration config = new Gson().fromJson(reader, Configuration.class);
+            if (config == null)
+                throw new IOException("empty configuration file: " + path);
+            config.file = file;
+            return config;
+        }
+    }
+
+    public List<CameraConfiguration> getCameras()
+    {
+        return cameras.configurations;
+    }
+    public String getCameraDataPath()
+    {
+        return resolve(cameras.dataPath);
+    }
+    public List<LidarConfiguration> getLidars()
+    {
+        return lidars.configurations;
+    }
+    public String getLidarDataPath()
+    {
+        return resolve(lidars.dataPath);
+    }
+    public String getPoseDataPath()
+    {
+        return resolve(poseJsonFile);
+    }
+    public int getTickTime()
+    {
+        return tickTime;
+    }
+    public int getDuration()
+    {
+        return duration;
+    }
+    /**
+     * @return true if ticks should advance as fast as the services handle
+     *         them instead of every TickTime milliseconds.
+     */
+    public boolean isVirtualTime()
+    {
+        return virtualTime;
+    }
+    /**
+     * @return true if a service that falls behind should receive only the
+     *         latest tick.
+     */
+    public boolean isCoalesceTicks()
+    {
+        return coalesceTicks;
+    }
+
+    /**
+     * @return The milliseconds between dumps of the message-bus metrics to
+     *         the output file, 0 unless the bus should be instrumented.
+     */
+    public int getMetricsDumpInterval()
+    {
+        return Math.max(0, metricsDumpInterval);
+    }
+
+    /**
+     * @return The ticks between checkpoints of the landmarks to
+     *         {@link #getCheckpointPath()}, 0 unless checkpoints are taken.
+     */
+    public int getCheckpointInterval()
+    {
+        return Math.max(0, checkpointInterval);
+    }
+
+    /**
+     * @return How the micro-services are run, one platform thread each unless
+     *         configured otherwise.
+     */
+    public ExecutionMode getExecutionMode()
+    {
+        return executionMode == null ? ExecutionMode.THREAD_PER_SERVICE : executionMode;
+    }
+
+    /**
+     * @return The number of worker threads in {@link ExecutionMode#POOLED}
+     *         mode, the number of processors unless configured otherwise.
+     */
+    public int getPoolSize()
+    {
+        return poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return The precision LiDAR cloud points are stored in, double unless
+     *         configured otherwise.
+     */
+    public PointCloud.Precision getCloudPointPrecision()
+    {
+        return cloudPointPrecision == null ? PointCloud.Precision.DOUBLE : cloudPointPrecision;
+    }
+
+    /**
+     * @return Where the binary snapshot of the data files is kept, next to
+     *         the configuration file.
+     */
+    public String getSnapshotPath()
+    {
+        return file == null ? null : file + ".snapshot";
+    }
+
+    /**
+     * @return Where the output of the simulation is written, next to the
+     *         configuration file.
+     */
+    public String getOutputPath()
+    {
+        return resolve("output_file.json");
+    }
+
+    /**
+     * @return Where the journal of checkpoints is written, next to the
+     *         configuration file.
+     */
+    public String getCheckpointPath()
+    {
+        return resolve("output_file.checkpoint.jsonl");
+    }
+
+    private String resolve(String path)
+    {
+        if (path == null || file == null)
+            return path;
+        return file.getParent().resolve(path).normalize().toString();
+    }
+}
@@ -1,11 +1,44 @@
 package bgu.spl.mics.application;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import bgu.spl.mics.BusMetrics;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.ServiceExecutor;
+import bgu.spl.mics.application.messages.DetectObjectsEvent;
+import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.LiDarWorkerTracker;
+import bgu.spl.mics.application.objects.ReorderBuffer;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+import bgu.spl.mics.application.services.CameraService;
+import bgu.spl.mics.application.services.FusionSlamService;
+import bgu.spl.mics.application.services.LiDarService;
+import bgu.spl.mics.application.services.PoseService;
+import bgu.spl.mics.application.services.TimeService;
+
 /**
  * The main entry point for the GurionRock Pro Max Ultra Over 9000 simulation.
  * <p>
  * This class initializes the system and starts the simulation by setting up
  * services, objects, and configurations.
  * </p>
+ * Startup runs in phases, each timed: the data files are parsed concurrently,
+ * the services are constructed concurrently, and all of them are started and
+ * initialized before the TimeService is started, so that no service misses a
+ * tick.
  */
 public class GurionRockRunner {
 
@@ -13,14 +46,251 @@ public class GurionRockRunner {
      * The main method of the simulation.
      * This method sets up the necessary components, parses configuration files,
      * initializes services, and starts the simulation.
+     * <p>
+     * The command {@code snapshot <configuration file>} instead converts the
+     * data files of the configuration into a binary {@link Snapshot}, which
+     * later runs of the same configuration load from while it is up to date.
+     * The command {@code generate <directory> [name=count]...} writes a
+     * synthetic configuration and its data files into the directory, see
+     * {@link #generate(String[])}.
      *
      * @param args Command-line arguments. The first argument is expected to be the path to the configuration file.
      */
     public static void main(String[] args) {
-        System.out.println("Hello World!");
+        if (args.length > 0 && args[0].equals("generate")) {
+            generate(args);
+            return;
+        }
+        boolean snapshot = args.length > 0 && args[0].equals("snapshot");
+        if (args.length < (snapshot ? 2 : 1)) {
+            System.err.println("usage: GurionRockRunner [snapshot] <configuration file>");
+            System.err.println("       GurionRockRunner generate <directory> [cameras=N] [lidars=N] [ticks=N] [objects=N] [points=N]");
+            return;
+        }
+        Configuration config;
+        try {
+            config = Configuration.load(args[snapshot ? 1 : 0]);
+        } catch (IOException e) {
+            System.err.println("cannot read configuration file: " + e.getMessage());
+            return;
+        }
+        if (snapshot) {
+            try {
+                Snapshot.write(config);
+            } catch (IOException e) {
+                System.err.println("cannot write snapshot: " + e.getMessage());
+            }
+            return;
+        }
+
+        try {
+            run(config);
+        } catch (IOException e) {
+            System.err.println("cannot run the simulation: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the simulation of {@code config} and writes its output file.
+     *
+     * @param config The simulation's configuration.
+     * @throws IOException          If a data file cannot be read or the
+     *                              output cannot be written.
+     * @throws InterruptedException If interrupted before the run finished.
+     */
+    public static void run(Configuration config) throws IOException, InterruptedException {
+        ExecutorService startup = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        ServiceExecutor executor = new ServiceExecutor(config.getExecutionMode(), config.getPoolSize());
+        ScheduledExecutorService dumps = null;
+        OutputWriter.Checkpoint checkpoint = null;
+        try {
+            long phase = System.nanoTime();
+            SensorInputs inputs = SensorInputs.load(config, startup);
+            phase = printPhase("parse", phase);
+
+            List<MicroService> services = createServices(config, inputs, startup);
+            phase = printPhase("construct", phase);
+
+            MessageBusImpl.getInstance().setDispatchPolicy(DetectObjectsEvent.class, DetectObjectsEvent.stickyByObjectId());
+            Path output = Paths.get(config.getOutputPath());
+            BusMetrics metrics = null;
+            if (config.getMetricsDumpInterval() > 0) {
+                metrics = MessageBusImpl.getInstance().enableMetrics();
+                dumps = dumpMetrics(output, metrics, config.getMetricsDumpInterval());
+            }
+            if (config.getCheckpointInterval() > 0) {
+                checkpoint = new OutputWriter.Checkpoint(Paths.get(config.getCheckpointPath()));
+                for (MicroService service : services) {
+                    if (service instanceof FusionSlamService)
+                        checkpointEvery((FusionSlamService) service, config.getCheckpointInterval(), checkpoint);
+                }
+            }
+            for (MicroService service : services)
+                executor.execute(service);
+            executor.awaitInitialization();
+            phase = printPhase("start", phase);
+
+            executor.execute(new TimeService(config.getTickTime(), config.getDuration(),
+                    config.isCoalesceTicks(), config.isVirtualTime()));
+            executor.awaitTermination();
+            printPhase("run", phase);
+            if (dumps != null) {
+                dumps.shutdown();
+                dumps.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            for (MicroService service : services) {
+                if (service instanceof FusionSlamService)
+                    printReorderBuffer(((FusionSlamService) service).getReorderBuffer());
+            }
+
+            OutputWriter.write(output, StatisticalFolder.getInstance().snapshot(),
+                    FusionSlam.getInstance().getLandmarks(), metrics);
+        } finally {
+            startup.shutdown();
+            executor.shutdown();
+            if (dumps != null)
+                dumps.shutdownNow();
+            if (checkpoint != null)
+                close(checkpoint);
+        }
+    }
+
+    /**
+     * Writes the inputs of an {@link InputGenerator} into {@code args[1]}.
+     * The counts it takes default to 2 cameras, 2 LiDAR workers, 1000
+     * ticks, 4 objects per camera and tick and 8 points per object.
+     */
+    private static void generate(String[] args) {
+        if (args.length < 2) {
+            System.err.println("usage: GurionRockRunner generate <directory> [cameras=N] [lidars=N] [ticks=N] [objects=N] [points=N]");
+            return;
+        }
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put("cameras", 2);
+        counts.put("lidars", 2);
+        counts.put("ticks", 1000);
+        counts.put("objects", 4);
+        counts.put("points", 8);
+        for (int i = 2; i < args.length; i++) {
+            int eq = args[i].indexOf('=');
+            String name = eq < 0 ? args[i] : args[i].substring(0, eq);
+            if (eq < 0 || !counts.containsKey(name)) {
+                System.err.println("unknown argument: " + args[i]);
+                return;
+            }
+            try {
+                counts.put(name, Integer.parseInt(args[i].substring(eq + 1)));
+            } catch (NumberFormatException e) {
+                System.err.println("not a count: " + args[i]);
+                return;
+            }
+        }
+        try {
+            InputGenerator generator = new InputGenerator(counts.get("cameras"), counts.get("lidars"),
+                    counts.get("ticks"), counts.get("objects"), counts.get("points"));
+            System.out.println("generated " + generator.write(Paths.get(args[1])));
+        } catch (IllegalArgumentException e) {
+            System.err.println("cannot generate inputs: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("cannot write inputs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Constructs the sensor services and the FusionSlamService concurrently on
+     * {@code startup}.
+     */
+    private static List<MicroService> createServices(Configuration config, SensorInputs inputs, ExecutorService startup) {
+        List<CompletableFuture<? extends MicroService>> created = new ArrayList<>();
+        for (Configuration.CameraConfiguration camera : config.getCameras())
+            created.add(create(startup, () -> new CameraService(inputs.createCamera(camera))));
+        for (Configuration.LidarConfiguration lidar : config.getLidars())
+            created.add(create(startup, () -> new LiDarService(
+                    new LiDarWorkerTracker(lidar.getId(), lidar.getFrequency(), inputs.getLidar()))));
+        created.add(create(startup, () -> new PoseService(inputs.createGPSIMU())));
+        created.add(create(startup, () -> {
+            FusionSlam fusionSlam = FusionSlam.getInstance();
+            fusionSlam.setSensorLatency(slowestFrequency(config));
+            return new FusionSlamService(fusionSlam);
+        }));
 
-        // TODO: Parse configuration file.
-        // TODO: Initialize system components and services.
-        // TODO: Start the simulation.
+        List<MicroService> services = new ArrayList<>();
+        for (CompletableFuture<? extends MicroService> service : created)
+            services.add(service.join());
+        return services;
+    }
+
+    /**
+     * @return The most ticks a sensor reports after the time of its data.
+     */
+    private static int slowestFrequency(Configuration config) {
+        int slowest = 0;
+        for (Configuration.CameraConfiguration camera : config.getCameras())
+            slowest = Math.max(slowest, camera.getFrequency());
+        for (Configuration.LidarConfiguration lidar : config.getLidars())
+            slowest = Math.max(slowest, lidar.getFrequency());
+        return slowest;
+    }
+
+    private static <S extends MicroService> CompletableFuture<S> create(ExecutorService startup, Supplier<S> constructor) {
+        return CompletableFuture.supplyAsync(constructor, startup);
+    }
+
+    private static long printPhase(String name, long since) {
+        long now = System.nanoTime();
+        System.out.println(name + ": " + (now - since) / 1000000 + " ms");
+        return now;
+    }
+
+    private static void printReorderBuffer(ReorderBuffer buffer) {
+        System.out.printf("reorder buffer: %d released, %d left, at most %d parked, wait mean %.2f max %d ticks%n",
+                buffer.getReleased(), buffer.size(), buffer.getMaxSize(), buffer.getMeanWait(), buffer.getMaxWait());
+    }
+
+    /**
+     * Appends the landmarks {@code service} changed to {@code checkpoint}
+     * every {@code interval} ticks. A checkpoint that cannot be written is
+     * reported and the run goes on.
+     */
+    private static void checkpointEvery(FusionSlamService service, int interval, OutputWriter.Checkpoint checkpoint) {
+        service.checkpointEvery(interval, (landmarks, tick) -> {
+            try {
+                checkpoint.append(tick, StatisticalFolder.getInstance().totals(), landmarks);
+            } catch (IOException e) {
+                System.err.println("cannot write checkpoint: " + e.getMessage());
+            }
+        });
+    }
+
+    private static void close(OutputWriter.Checkpoint checkpoint) {
+        try {
+            checkpoint.close();
+        } catch (IOException e) {
+            System.err.println("cannot close checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites the output file every {@code interval} milliseconds with the
+     * statistics and the message-bus metrics so far. Landmarks are written at
+     * the end of the run only, since FusionSlam is not safe to read while it
+     * runs.
+     */
+    private static ScheduledExecutorService dumpMetrics(Path output, BusMetrics metrics, int interval) {
+        ScheduledExecutorService dumps = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumps.scheduleAtFixedRate(() -> {
+            try {
+                OutputWriter.write(output, StatisticalFolder.getInstance().totals(), null, metrics);
+            } catch (IOException e) {
+                System.err.println("cannot dump metrics: " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        return dumps;
     }
 }
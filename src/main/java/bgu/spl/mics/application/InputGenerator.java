@@ -0,0 +1,255 @@
+package bgu.spl.mics.application;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Generates a consistent set of input files of any size for load testing:
+ * {@code configuration_file.json}, {@code camera_data.json},
+ * {@code lidar_data.json} and {@code pose_data.json}.
+ * <p>
+ * The world holds {@code 4 * cameras * objects} objects, each a line of
+ * {@code points} points at a random place and angle. The robot drives around
+ * a circle through them, one degree per tick. At every tick each camera
+ * detects {@code objects} objects, no two cameras the same one, and moves on
+ * to the next objects every 8 ticks, so every object is seen again and again.
+ * The LiDAR data holds the points of every object detected at every tick as
+ * seen from the pose of that tick, so FusionSlam maps every object back to
+ * where it is, and the recorded poses are the floats it reads.
+ * <p>
+ * Files are written as they are generated, a tick at a time, so memory does
+ * not grow with the number of ticks: only the shapes of the objects are
+ * kept. The same parameters always generate the same files.
+ */
+public final class InputGenerator
+{
+    private static final int DWELL = 8;
+    private static final double RADIUS = 50;
+
+    private final int cameras;
+    private final int lidars;
+    private final int ticks;
+    private final int objects;
+    private final int points;
+    private final int landmarks;
+    // the shape of each object, in global coordinates
+    private final double[][] shapeX;
+    private final double[][] shapeY;
+    private final double[][] shapeZ;
+
+    /**
+     * @param cameras The number of cameras.
+     * @param lidars  The number of LiDAR workers.
+     * @param ticks   The number of ticks with data.
+     * @param objects The number of objects each camera detects per tick.
+     * @param points  The number of cloud points per object.
+     * @throws IllegalArgumentException if a count is not positive.
+     */
+    public InputGenerator(int cameras, int lidars, int ticks, int objects, int points)
+    {
+        if (cameras <= 0 || lidars <= 0 || ticks <= 0 || objects <= 0 || points <= 0)
+            throw new IllegalArgumentException("counts must be positive");
+        this.cameras = cameras;
+        this.lidars = lidars;
+        this.ticks = ticks;
+        this.objects = objects;
+        this.points = points;
+        this.landmarks = Math.multiplyExact(4 * cameras, objects);
+
+        Random random = new Random(((long) cameras * 31 + lidars) * 31 + objects);
+        shapeX = new double[landmarks][points];
+        shapeY = new double[landmarks][points];
+        shapeZ = new double[landmarks][points];
+        for (int o = 0; o < landmarks; o++)
+        {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double distance = RADIUS * (0.5 + random.nextDouble());
+            double heading = random.nextDouble() * Math.PI;
+            double length = 0.5 + random.nextDouble() * 2;
+            for (int p = 0; p < points; p++)
+            {
+                double along = points == 1 ? 0 : length * p / (points - 1) - length / 2;
+                shapeX[o][p] = distance * Math.cos(angle) + along * Math.cos(heading);
+                shapeY[o][p] = distance * Math.sin(angle) + along * Math.sin(heading);
+                shapeZ[o][p] = random.nextDouble();
+            }
+        }
+    }
+
+    /**
+     * Writes the four files into {@code directory}, replacing any there.
+     *
+     * @return The configuration file.
+     * @throws IOException If a file cannot be written.
+     */
+    public Path write(Path directory) throws IOException
+    {
+        Files.createDirectories(directory);
+        writeCameras(directory.resolve("camera_data.json"));
+        writeLidar(directory.resolve("lidar_data.json"));
+        writePoses(directory.resolve("pose_data.json"));
+        Path config = directory.resolve("configuration_file.json");
+        writeConfiguration(config);
+        return config;
+    }
+
+    private void writeConfiguration(Path path) throws IOException
+    {
+        try (JsonWriter json = open(path))
+        {
+            json.setIndent("  ");
+            json.beginObject();
+            json.name("Cameras").beginObject().name("CamerasConfigurations").beginArray();
+            for (int c = 1; c <= cameras; c++)
+                json.beginObject().name("id").value(c).name("frequency").value(cameraFrequency(c))
+                        .name("camera_key").value("camera" + c).endObject();
+            json.endArray().name("camera_datas_path").value("./camera_data.json").endObject();
+            json.name("Lidars").beginObject().name("LidarConfigurations").beginArray();
+            for (int l = 1; l <= lidars; l++)
+                json.beginObject().name("id").value(l).name("frequency").value(lidarFrequency(l)).endObject();
+            json.endArray().name("lidars_data_path").value("./lidar_data.json").endObject();
+            json.name("poseJsonFile").value("./pose_data.json");
+            json.name("TickTime").value(1);
+            // leave the slowest sensor time to report the last tick
+            json.name("Duration").value(ticks + slowestFrequency() + 1);
+            json.name("VirtualTime").value(true);
+            json.endObject();
+        }
+    }
+
+    private void writeCameras(Path path) throws IOException
+    {
+        try (JsonWriter json = open(path))
+        {
+            json.beginObject();
+            for (int c = 1; c <= cameras; c++)
+            {
+                json.name("camera" + c).beginArray();
+                for (int t = 1; t <= ticks; t++)
+                {
+                    json.beginObject().name("time").value(t).name("detectedObjects").beginArray();
+                    for (int k = 0; k < objects; k++)
+                    {
+                        int o = detected(c, t, k);
+                        json.beginObject().name("id").value(id(o)).name("description").value(description(o)).endObject();
+                    }
+                    json.endArray().endObject();
+                }
+                json.endArray();
+            }
+            json.endObject();
+        }
+    }
+
+    private void writeLidar(Path path) throws IOException
+    {
+        try (JsonWriter json = open(path))
+        {
+            json.beginArray();
+            for (int t = 1; t <= ticks; t++)
+            {
+                double yaw = Math.toRadians(poseYaw(t));
+                double cos = Math.cos(yaw);
+                double sin = Math.sin(yaw);
+                double x = poseX(t);
+                double y = poseY(t);
+                for (int c = 1; c <= cameras; c++)
+                    for (int k = 0; k < objects; k++)
+                    {
+                        int o = detected(c, t, k);
+                        json.beginObject().name("time").value(t).name("id").value(id(o)).name("cloudPoints").beginArray();
+                        for (int p = 0; p < points; p++)
+                        {
+                            // the inverse of the rotation and translation FusionSlam applies
+                            double dx = shapeX[o][p] - x;
+                            double dy = shapeY[o][p] - y;
+                            json.beginArray().value(cos * dx + sin * dy).value(-sin * dx + cos * dy)
+                                    .value(shapeZ[o][p]).endArray();
+                        }
+                        json.endArray().endObject();
+                    }
+            }
+            json.endArray();
+        }
+    }
+
+    private void writePoses(Path path) throws IOException
+    {
+        try (JsonWriter json = open(path))
+        {
+            json.beginArray();
+            for (int t = 1; t <= ticks; t++)
+                json.beginObject().name("time").value(t).name("x").value(poseX(t)).name("y").value(poseY(t))
+                        .name("yaw").value(poseYaw(t)).endObject();
+            json.endArray();
+        }
+    }
+
+    /**
+     * @return The k-th object camera {@code c} detects at tick {@code t}.
+     */
+    private int detected(int c, int t, int k)
+    {
+        long frame = (long) (t - 1) / DWELL * cameras + c - 1;
+        return (int) ((frame * objects + k) % landmarks);
+    }
+
+    private int slowestFrequency()
+    {
+        int slowest = 0;
+        for (int c = 1; c <= Math.min(cameras, 2); c++)
+            slowest = Math.max(slowest, cameraFrequency(c));
+        for (int l = 1; l <= Math.min(lidars, 4); l++)
+            slowest = Math.max(slowest, lidarFrequency(l));
+        return slowest;
+    }
+
+    private static String id(int o)
+    {
+        return "Object_" + o;
+    }
+
+    private static String description(int o)
+    {
+        return o % 2 == 0 ? "Wall" : "Pillar";
+    }
+
+    private static int cameraFrequency(int c)
+    {
+        return 1 + (c - 1) % 2;
+    }
+
+    private static int lidarFrequency(int l)
+    {
+        return 1 + (l - 1) % 4;
+    }
+
+    // poses are the floats they are read as, so that the LiDAR data matches them exactly
+    private static float poseX(int t)
+    {
+        return (float) (RADIUS * Math.cos(Math.toRadians(t)));
+    }
+
+    private static float poseY(int t)
+    {
+        return (float) (RADIUS * Math.sin(Math.toRadians(t)));
+    }
+
+    private static float poseYaw(int t)
+    {
+        // heading along the circle, in [-180, 180)
+        return (t + 270) % 360 - 180;
+    }
+
+    private static JsonWriter open(Path path) throws IOException
+    {
+        Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        return new JsonWriter(writer);
+    }
+}
@@ -0,0 +1,188 @@
+package bgu.spl.mics.application;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+
+import bgu.spl.mics.BusMetrics;
+import bgu.spl.mics.application.objects.LandMark;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+
+/**
+ * Writes the output of a run: the statistics, the landmarks and the
+ * message-bus metrics.
+ * <p>
+ * Everything is streamed through a {@link JsonWriter} into a buffered
+ * {@link FileChannel}, a landmark at a time and each straight from its
+ * coordinate arrays, so writing takes no memory beyond the map itself. The output file
+ * is written beside the target and moved over it once complete, so a reader
+ * never sees half of it.
+ * <p>
+ * A {@link Checkpoint} instead appends to a journal, one line per record, so
+ * the landmarks of a run that crashes are not lost.
+ */
+public final class OutputWriter
+{
+    private static final int BUFFER = 1 << 16;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private OutputWriter()
+    {
+    }
+
+    /**
+     * Writes the output file at {@code path}, replacing any older one.
+     *
+     * @param stats     The statistics of the run.
+     * @param landmarks The landmarks to write, or null to leave them out.
+     * @param metrics   The message-bus metrics, or null to leave them out.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path path, StatisticalFolder.Snapshot stats, Collection<LandMark> landmarks,
+            BusMetrics metrics) throws IOException
+    {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+                JsonWriter json = GSON.newJsonWriter(open(channel)))
+        {
+            json.beginObject();
+            writeStatistics(json, stats);
+            if (landmarks != null)
+            {
+                json.name("landMarks").beginObject();
+                for (LandMark landmark : landmarks)
+                    writeLandmark(json.name(landmark.getId()), landmark);
+                json.endObject();
+            }
+            if (metrics != null)
+            {
+                Map<String, Object> bus = metricsOf(metrics);
+                GSON.toJson(bus, bus.getClass(), json.name("messageBus"));
+            }
+            json.endObject();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * A journal of the landmarks of a run, for recovering the map of a run
+     * that did not finish. Every call to {@link #append} adds one line holding
+     * a JSON object: the tick, the statistics so far and the landmarks found
+     * or refined since the previous record, and forces it to the disk. The
+     * latest record of a landmark supersedes the earlier ones; a last line cut
+     * short by a crash is not a record.
+     */
+    public static final class Checkpoint implements Closeable
+    {
+        private final FileChannel channel;
+        private final Writer writer;
+
+        /**
+         * Starts a journal at {@code path}, replacing any older one.
+         *
+         * @throws IOException If the file cannot be created.
+         */
+        public Checkpoint(Path path) throws IOException
+        {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            writer = open(channel);
+        }
+
+        /**
+         * Appends a record and forces it to the disk.
+         *
+         * @param tick      The tick the record was taken at.
+         * @param stats     The statistics so far.
+         * @param landmarks The landmarks found or refined since the previous
+         *                  record.
+         * @throws IOException If the record cannot be written.
+         */
+        public synchronized void append(int tick, StatisticalFolder.Snapshot stats, Collection<LandMark> landmarks)
+                throws IOException
+        {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name("tick").value(tick);
+            writeStatistics(json, stats);
+            json.name("landMarks").beginArray();
+            for (LandMark landmark : landmarks)
+                writeLandmark(json, landmark);
+            json.endArray();
+            json.endObject();
+            // the JsonWriter is not closed, which would close the journal
+            json.flush();
+            writer.write('\n');
+            writer.flush();
+            channel.force(false);
+        }
+
+        @Override
+        public synchronized void close() throws IOException
+        {
+            writer.close();
+        }
+    }
+
+    private static void writeStatistics(JsonWriter json, StatisticalFolder.Snapshot stats) throws IOException
+    {
+        json.name("systemRuntime").value(stats.getSystemRuntime());
+        json.name("numDetectedObjects").value(stats.getTotal(StatisticalFolder.Metric.DETECTED_OBJECTS));
+        json.name("numTrackedObjects").value(stats.getTotal(StatisticalFolder.Metric.TRACKED_OBJECTS));
+        json.name("numLandmarks").value(stats.getTotal(StatisticalFolder.Metric.LANDMARKS));
+    }
+
+    private static void writeLandmark(JsonWriter json, LandMark landmark) throws IOException
+    {
+        json.beginObject();
+        json.name("id").value(landmark.getId());
+        json.name("description").value(landmark.getDescription());
+        json.name("coordinates").beginArray();
+        // straight from the landmark, not from the copy getPoints() would keep
+        for (int i = 0; i < landmark.size(); i++)
+            json.beginObject().name("x").value(landmark.getX(i)).name("y").value(landmark.getY(i)).endObject();
+        json.endArray();
+        json.endObject();
+    }
+
+    private static Map<String, Object> metricsOf(BusMetrics metrics)
+    {
+        Map<String, Object> bus = new LinkedHashMap<>();
+        bus.put("uptimeMillis", metrics.getUptimeMillis());
+        bus.put("sendCounts", metrics.getSendCounts());
+        bus.put("sendRates", metrics.getSendRates());
+        bus.put("queueLatencyNanos", metrics.getQueueLatencies());
+        bus.put("mailboxDepths", metrics.getMailboxDepths());
+        bus.put("maxMailboxDepths", metrics.getMaxMailboxDepths());
+        bus.put("callbackTimeNanos", metrics.getCallbackTimes());
+        bus.put("lostSamples", metrics.getLostSamples());
+        return bus;
+    }
+
+    private static Writer open(FileChannel channel)
+    {
+        Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER);
+        return new BufferedWriter(writer, BUFFER);
+    }
+}
@@ -0,0 +1,440 @@
+package bgu.spl.mics.application;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import bgu.spl.mics.application.objects.Camera;
+import bgu.spl.mics.application.objects.DetectedObject;
+import bgu.spl.mics.application.objects.GPSIMU;
+import bgu.spl.mics.application.objects.LiDarDataBase;
+import bgu.spl.mics.application.objects.PointCloud;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.StampedDetectedObjects;
+
+/**
+ * The recorded sensor data a simulation runs on: the detections of every
+ * camera, the robot's poses and the LiDAR cloud points.
+ * <p>
+ * The data is read from the binary snapshot of the configuration's data
+ * files when there is an up to date one, see {@link Snapshot}, and from the
+ * JSON data files otherwise.
+ */
+public class SensorInputs
+{
+    private static final int BUFFER = 1 << 16;
+
+    private final Map<String, List<StampedDetectedObjects>> cameraData;
+    private final List<Pose> poses;
+    private final LiDarDataBase lidar;
+
+    SensorInputs(Map<String, List<StampedDetectedObjects>> cameraData, List<Pose> poses, LiDarDataBase lidar)
+    {
+        this.cameraData = cameraData;
+        this.poses = poses;
+        this.lidar = lidar;
+    }
+
+    /**
+     * Loads the data files of {@code config}, from their snapshot if it is up
+     * to date.
+     *
+     * @param config The simulation's configuration.
+     * @return The loaded data.
+     * @throws IOException If the data files cannot be read.
+     */
+    public static SensorInputs load(Configuration config) throws IOException
+    {
+        return load(config, Runnable::run);
+    }
+
+    /**
+     * Loads the data files of {@code config}, from their snapshot if it is up
+     * to date. Otherwise the recording of each camera, the poses and the LiDAR
+     * data are parsed concurrently on {@code executor}.
+     *
+     * @param config   The simulation's configuration.
+     * @param executor The executor to parse the data files on.
+     * @return The loaded data.
+     * @throws IOException If the data files cannot be read.
+     */
+    public static SensorInputs load(Configuration config, Executor executor) throws IOException
+    {
+        try
+        {
+            SensorInputs inputs = Snapshot.read(config);
+            if (inputs != null)
+                return inputs;
+        }
+        catch (IOException e)
+        {
+            // a corrupt snapshot is as good as a stale one
+        }
+        return fromJson(config, config.getCloudPointPrecision(), executor);
+    }
+
+    /**
+     * Parses the JSON data files of {@code config}.
+     *
+     * @param config The simulation's configuration.
+     * @return The parsed data.
+     * @throws IOException If the data files cannot be read.
+     */
+    public static SensorInputs fromJson(Configuration config) throws IOException
+    {
+        return fromJson(config, config.getCloudPointPrecision(), Runnable::run);
+    }
+
+    static SensorInputs fromJson(Configuration config, PointCloud.Precision precision, Executor executor) throws IOException
+    {
+        String cameraPath = config.getCameraDataPath();
+        CompletableFuture<Map<String, List<Long>>> cameraIndex = parse(executor, () -> indexCameraData(cameraPath));
+        Map<String, CompletableFuture<List<StampedDetectedObjects>>> cameras = new LinkedHashMap<>();
+        for (Configuration.CameraConfiguration camera : config.getCameras())
+        {
+            String key = camera.getCameraKey();
+            if (!cameras.containsKey(key))
+                cameras.put(key, cameraIndex.thenCompose(index -> parse(executor,
+                        () -> readCameraData(cameraPath, index.getOrDefault(key, Collections.emptyList())))));
+        }
+        CompletableFuture<List<Pose>> poses = parse(executor, () -> {
+            try (JsonReader reader = open(config.getPoseDataPath()))
+            {
+                return readPoses(reader);
+            }
+        });
+        CompletableFuture<LiDarDataBase> lidar = parse(executor, () -> LiDarDataBase.load(config.getLidarDataPath(), precision));
+
+        Map<String, List<StampedDetectedObjects>> cameraData = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<List<StampedDetectedObjects>>> camera : cameras.entrySet())
+            cameraData.put(camera.getKey(), join(camera.getValue()));
+        return new SensorInputs(cameraData, join(poses), join(lidar));
+    }
+
+    /**
+     * @return The detections of every camera, by camera key.
+     */
+    public Map<String, List<StampedDetectedObjects>> getCameraData()
+    {
+        return Collections.unmodifiableMap(cameraData);
+    }
+    /**
+     * @param cameraKey The camera key of the configuration file.
+     * @return The detections of the camera, empty if none were recorded.
+     */
+    public List<StampedDetectedObjects> getCameraData(String cameraKey)
+    {
+        List<StampedDetectedObjects> data = cameraData.get(cameraKey);
+        return data == null ? Collections.emptyList() : data;
+    }
+    public List<Pose> getPoses()
+    {
+        return poses;
+    }
+    public LiDarDataBase getLidar()
+    {
+        return lidar;
+    }
+    /**
+     * @return A camera replaying the detections recorded for {@code camera}.
+     */
+    public Camera createCamera(Configuration.CameraConfiguration camera)
+    {
+        return new Camera(camera.getId(), camera.getFrequency(), getCameraData(camera.getCameraKey()));
+    }
+    /**
+     * @return A GPSIMU replaying the recorded poses.
+     */
+    public GPSIMU createGPSIMU()
+    {
+        return new GPSIMU(poses);
+    }
+
+    private static JsonReader open(String path) throws IOException
+    {
+        Reader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8);
+        return new JsonReader(reader);
+    }
+
+    private interface Parser<T>
+    {
+        T parse() throws IOException;
+    }
+
+    private static <T> CompletableFuture<T> parse(Executor executor, Parser<T> parser)
+    {
+        return CompletableFuture.supplyAsync(() -> {
+            try
+            {
+                return parser.parse();
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    private static <T> T join(CompletableFuture<T> parsed) throws IOException
+    {
+        try
+        {
+            return parsed.join();
+        }
+        catch (CompletionException e)
+        {
+            if (e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Scans the camera data file once, without parsing it, for where the
+     * recording of each camera starts, so that every camera can parse its own
+     * recording alone rather than skip over all the others.
+     *
+     * @return The offsets of the values of the top-level object, by name, in
+     *         the order they appear.
+     */
+    private static Map<String, List<Long>> indexCameraData(String path) throws IOException
+    {
+        Map<String, List<Long>> index = new LinkedHashMap<>();
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        // at depth 1, between a '{' or ',' and the next name, and between a name and its value
+        boolean expectName = false;
+        boolean expectValue = false;
+        ByteArrayOutputStream name = null;
+        boolean nameEscaped = false;
+        String key = null;
+        long position = 0;
+        byte[] buffer = new byte[BUFFER];
+        try (InputStream in = Files.newInputStream(Paths.get(path)))
+        {
+            for (int n; (n = in.read(buffer)) > 0; )
+            {
+                for (int i = 0; i < n; i++, position++)
+                {
+                    byte b = buffer[i];
+                    if (inString)
+                    {
+                        if (escaped)
+                            escaped = false;
+                        else if (b == '\\')
+                            escaped = nameEscaped = true;
+                        else if (b == '"')
+                        {
+                            inString = false;
+                            if (name != null)
+                            {
+                                key = nameOf(name, nameEscaped);
+                                name = null;
+                                expectValue = true;
+                            }
+                            continue;
+                        }
+                        if (name != null)
+                            name.write(b);
+                        continue;
+                    }
+                    if (b == ' ' || b == '\t' || b == '\n' || b == '\r')
+                        continue;
+                    if (depth == 0 && b != '{')
+                        throw new JsonParseException("camera data at offset " + position + " is not a JSON object");
+                    if (depth == 1 && expectValue && b != ':')
+                    {
+                        index.computeIfAbsent(key, k -> new ArrayList<>()).add(position);
+                        expectValue = false;
+                    }
+                    switch (b)
+                    {
+                        case '"':
+                            inString = true;
+                            if (depth == 1 && expectName)
+                            {
+                                name = new ByteArrayOutputStream();
+                                nameEscaped = false;
+                                expectName = false;
+                            }
+                            break;
+                        case '[':
+                        case '{':
+                            depth++;
+                            expectName = depth == 1 && b == '{';
+                            break;
+                        case ']':
+                        case '}':
+                            depth--;
+                            if (depth < 0)
+                                throw new JsonParseException("unbalanced camera data at offset " + position);
+                            break;
+                        case ',':
+                            expectName = depth == 1;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+        }
+        if (depth != 0 || inString)
+            throw new JsonParseException("truncated camera data");
+        return index;
+    }
+
+    private static String nameOf(ByteArrayOutputStream name, boolean escaped) throws IOException
+    {
+        String raw = new String(name.toByteArray(), StandardCharsets.UTF_8);
+        if (!escaped)
+            return raw;
+        try (JsonReader reader = new JsonReader(new StringReader("\"" + raw + "\"")))
+        {
+            reader.setLenient(true);
+            return reader.nextString();
+        }
+    }
+
+    /**
+     * Reads the recording of a camera, the values at {@code offsets} in the
+     * camera data file.
+     */
+    private static List<StampedDetectedObjects> readCameraData(String path, List<Long> offsets) throws IOException
+    {
+        List<StampedDetectedObjects> stamps = new ArrayList<>();
+        for (long offset : offsets)
+        {
+            try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+            {
+                channel.position(offset);
+                // the reader stops at the end of the recording, not of the file
+                Reader in = new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8);
+                try (JsonReader reader = new JsonReader(in))
+                {
+                    readStamps(reader, stamps);
+                }
+            }
+        }
+        return stamps;
+    }
+
+    /**
+     * Reads an array of stamps, flattening nested arrays: some recordings
+     * wrap each camera's stamps in an extra array.
+     */
+    private static void readStamps(JsonReader reader, List<StampedDetectedObjects> stamps) throws IOException
+    {
+        reader.beginArray();
+        while (reader.hasNext())
+        {
+            if (reader.peek() == JsonToken.BEGIN_ARRAY)
+                readStamps(reader, stamps);
+            else
+                stamps.add(readStamp(reader));
+        }
+        reader.endArray();
+    }
+
+    private static StampedDetectedObjects readStamp(JsonReader reader) throws IOException
+    {
+        int time = 0;
+        List<DetectedObject> objects = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            String name = reader.nextName();
+            if (name.equals("time"))
+                time = reader.nextInt();
+            else if (name.equals("detectedObjects"))
+            {
+                reader.beginArray();
+                while (reader.hasNext())
+                    objects.add(readObject(reader));
+                reader.endArray();
+            }
+            else
+                reader.skipValue();
+        }
+        reader.endObject();
+        StampedDetectedObjects stamp = new StampedDetectedObjects(time);
+        for (DetectedObject object : objects)
+            stamp.addObject(object);
+        return stamp;
+    }
+
+    private static DetectedObject readObject(JsonReader reader) throws IOException
+    {
+        String id = null;
+        String description = null;
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            String name = reader.nextName();
+            if (name.equals("id"))
+                id = reader.nextString();
+            else if (name.equals("description"))
+                description = reader.nextString();
+            else
+                reader.skipValue();
+        }
+        reader.endObject();
+        return new DetectedObject(id, description);
+    }
+
+    private static List<Pose> readPoses(JsonReader reader) throws IOException
+    {
+        List<Pose> poses = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext())
+        {
+            int time = 0;
+            float x = 0;
+            float y = 0;
+            float yaw = 0;
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                String name = reader.nextName();
+                if (name.equals("time"))
+                    time = reader.nextInt();
+                else if (name.equals("x"))
+                    x = (float) reader.nextDouble();
+                else if (name.equals("y"))
+                    y = (float) reader.nextDouble();
+                else if (name.equals("yaw"))
+                    yaw = (float) reader.nextDouble();
+                else
+                    reader.skipValue();
+            }
+            reader.endObject();
+            poses.add(new Pose(time, x, y, yaw));
+        }
+        reader.endArray();
+        return poses;
+    }
+}
@@ -0,0 +1,446 @@
+package bgu.spl.mics.application;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import bgu.spl.mics.application.objects.DetectedObject;
+import bgu.spl.mics.application.objects.LiDarDataBase;
+import bgu.spl.mics.application.objects.PointCloud;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.StampedDetectedObjects;
+
+/**
+ * A binary snapshot of the data files of a configuration, so that a run does
+ * not have to parse them from JSON.
+ * <p>
+ * All numbers are little-endian and strings are UTF-8 prefixed by their
+ * length in bytes as an int, or just -1 for null. The file starts with a header:
+ * <pre>
+ * int magic, int version
+ * long camera section, long pose section, long LiDAR blocks, long LiDAR index
+ * int 3, then for the camera, pose and LiDAR data files:
+ *     string path, long size, long last modified time
+ * </pre>
+ * The camera section holds the number of cameras and for each camera its key,
+ * the number of stamps and the stamps ordered by time, each a time, a number
+ * of objects and the id and description of each object. The pose section
+ * holds the number of poses n followed by n times, n x, n y and n yaw values
+ * as floats, ordered by time. The LiDAR blocks and their index are described
+ * in {@link LiDarDataBase#loadSnapshot(String, long, PointCloud.Precision)};
+ * the LiDAR data is mapped from the snapshot rather than read.
+ * <p>
+ * A snapshot is stale once any of the data files it was made from changed
+ * size or modification time, or was replaced by another file.
+ */
+public final class Snapshot
+{
+    private static final int MAGIC = 0x50414E53;
+    private static final int VERSION = 1;
+    private static final int HEADER_OFFSETS = 8;
+
+    private Snapshot()
+    {
+    }
+
+    /**
+     * Converts the data files of {@code config} into a snapshot at
+     * {@link Configuration#getSnapshotPath()}, replacing any older one.
+     *
+     * @param config The simulation's configuration.
+     * @throws IOException If a data file cannot be read or the snapshot
+     *                     cannot be written.
+     */
+    public static void write(Configuration config) throws IOException
+    {
+        // the snapshot keeps full precision whatever the configuration says
+        SensorInputs inputs = SensorInputs.fromJson(config, PointCloud.Precision.DOUBLE, Runnable::run);
+        Path target = Paths.get(config.getSnapshotPath());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (Output out = new Output(temp))
+        {
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            for (int i = 0; i < 4; i++)
+                out.putLong(0);
+            String[] sources = sources(config);
+            out.putInt(sources.length);
+            for (String source : sources)
+            {
+                Path path = Paths.get(source);
+                out.putString(path.toString());
+                out.putLong(Files.size(path));
+                out.putLong(Files.getLastModifiedTime(path).toMillis());
+            }
+
+            long cameras = out.position();
+            out.putInt(inputs.getCameraData().size());
+            for (Map.Entry<String, List<StampedDetectedObjects>> camera : inputs.getCameraData().entrySet())
+            {
+                StampedDetectedObjects[] stamps = camera.getValue().toArray(new StampedDetectedObjects[0]);
+                Arrays.sort(stamps, Comparator.comparingInt(StampedDetectedObjects::getTime));
+                out.putString(camera.getKey());
+                out.putInt(stamps.length);
+                for (StampedDetectedObjects stamp : stamps)
+                {
+                    out.putInt(stamp.getTime());
+                    out.putInt(stamp.getObjects().size());
+                    for (DetectedObject object : stamp.getObjects())
+                    {
+                        out.putString(object.getId());
+                        out.putString(object.getDescription());
+                    }
+                }
+            }
+
+            long poses = out.position();
+            Pose[] sorted = inputs.getPoses().toArray(new Pose[0]);
+            Arrays.sort(sorted, Comparator.comparingInt(Pose::getTime));
+            out.putInt(sorted.length);
+            for (Pose pose : sorted)
+                out.putInt(pose.getTime());
+            for (Pose pose : sorted)
+                out.putFloat(pose.getX());
+            for (Pose pose : sorted)
+                out.putFloat(pose.getY());
+            for (Pose pose : sorted)
+                out.putFloat(pose.getYaw());
+
+            long blocks = out.position();
+            List<Integer> times = new ArrayList<>();
+            List<String> ids = new ArrayList<>();
+            List<long[]> locations = new ArrayList<>();
+            inputs.getLidar().forEach(stamp -> {
+                try
+                {
+                    long start = out.position();
+                    PointCloud points = stamp.getPoints();
+                    out.putInt(points.size());
+                    for (int i = 0; i < points.size(); i++)
+                        out.putDouble(points.getX(i));
+                    for (int i = 0; i < points.size(); i++)
+                        out.putDouble(points.getY(i));
+                    for (int i = 0; i < points.size(); i++)
+                        out.putDouble(points.getZ(i));
+                    times.add(stamp.getTime());
+                    ids.add(stamp.getId());
+                    locations.add(new long[] { start, out.position() - start });
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            long lidarIndex = out.position();
+            out.putInt(ids.size());
+            for (int i = 0; i < ids.size(); i++)
+            {
+                long length = locations.get(i)[1];
+                if (length > Integer.MAX_VALUE)
+                    throw new IOException("LiDAR stamp " + ids.get(i) + " is too large for a snapshot");
+                out.putInt(times.get(i));
+                out.putString(ids.get(i));
+                out.putLong(locations.get(i)[0]);
+                out.putInt((int) length);
+            }
+            out.patch(HEADER_OFFSETS, cameras, poses, blocks, lidarIndex);
+        }
+        catch (UncheckedIOException e)
+        {
+            Files.deleteIfExists(temp);
+            throw e.getCause();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Loads the data files of {@code config} from their snapshot.
+     *
+     * @param config The simulation's configuration.
+     * @return The loaded data, or null if there is no snapshot or it is stale.
+     * @throws IOException If the snapshot cannot be read or is corrupt.
+     */
+    public static SensorInputs read(Configuration config) throws IOException
+    {
+        Path path = Paths.get(config.getSnapshotPath());
+        if (!Files.isRegularFile(path))
+            return null;
+        long lidarIndex;
+        Map<String, List<StampedDetectedObjects>> cameraData = new LinkedHashMap<>();
+        List<Pose> poseList = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            Input in = new Input(channel);
+            try
+            {
+                if (in.getInt() != MAGIC || in.getInt() != VERSION)
+                    return null;
+                long cameras = in.getLong();
+                long poses = in.getLong();
+                long blocks = in.getLong();
+                lidarIndex = in.getLong();
+                String[] sources = sources(config);
+                if (in.getInt() != sources.length)
+                    return null;
+                for (String source : sources)
+                {
+                    Path file = Paths.get(source);
+                    if (!file.toString().equals(in.getString())
+                            || !Files.isRegularFile(file)
+                            || in.getLong() != Files.size(file)
+                            || in.getLong() != Files.getLastModifiedTime(file).toMillis())
+                        return null;
+                }
+                if (cameras < 0 || cameras > poses || poses > blocks || blocks > lidarIndex || lidarIndex > channel.size())
+                    throw new IOException("corrupt snapshot header in " + path);
+
+                in.seek(cameras);
+                for (int c = in.getInt(); c > 0; c--)
+                {
+                    String key = in.getString();
+                    List<StampedDetectedObjects> stamps = new ArrayList<>();
+                    for (int s = in.getInt(); s > 0; s--)
+                    {
+                        StampedDetectedObjects stamp = new StampedDetectedObjects(in.getInt());
+                        for (int o = in.getInt(); o > 0; o--)
+                            stamp.addObject(new DetectedObject(in.getString(), in.getString()));
+                        stamps.add(stamp);
+                    }
+                    cameraData.put(key, stamps);
+                }
+                in.seek(poses);
+                int n = in.getInt();
+                if (n < 0 || 16L * n > in.remaining())
+                    throw new IOException("corrupt snapshot " + path);
+                int[] times = new int[n];
+                float[][] columns = new float[3][n];
+                for (int i = 0; i < n; i++)
+                    times[i] = in.getInt();
+                for (float[] column : columns)
+                    for (int i = 0; i < n; i++)
+                        column[i] = in.getFloat();
+                for (int i = 0; i < n; i++)
+                    poseList.add(new Pose(times[i], columns[0][i], columns[1][i], columns[2][i]));
+            }
+            catch (EOFException e)
+            {
+                throw new IOException("corrupt snapshot " + path, e);
+            }
+        }
+        LiDarDataBase lidar = LiDarDataBase.loadSnapshot(path.toString(), lidarIndex, config.getCloudPointPrecision());
+        return new SensorInputs(cameraData, poseList, lidar);
+    }
+
+    private static String[] sources(Configuration config)
+    {
+        return new String[] { config.getCameraDataPath(), config.getPoseDataPath(), config.getLidarDataPath() };
+    }
+
+    /**
+     * Reads little-endian values from a file through a buffer, so that a
+     * section of any size is read without mapping it whole.
+     */
+    private static final class Input
+    {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        // the position in the file of the start of the buffer
+        private long start;
+
+        Input(FileChannel channel)
+        {
+            this.channel = channel;
+            buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.limit(0);
+        }
+
+        void seek(long position)
+        {
+            start = position;
+            buffer.position(0).limit(0);
+        }
+
+        long remaining() throws IOException
+        {
+            return channel.size() - start - buffer.position();
+        }
+
+        int getInt() throws IOException
+        {
+            return ensure(4).getInt();
+        }
+
+        long getLong() throws IOException
+        {
+            return ensure(8).getLong();
+        }
+
+        float getFloat() throws IOException
+        {
+            return ensure(4).getFloat();
+        }
+
+        /**
+         * @return The string, or null if -1 was written for its length.
+         */
+        String getString() throws IOException
+        {
+            int length = getInt();
+            if (length < 0)
+                return null;
+            if (length > remaining())
+                throw new EOFException("string past the end of the snapshot");
+            byte[] bytes = new byte[length];
+            for (int at = 0; at < length; )
+            {
+                int n = Math.min(length - at, buffer.capacity());
+                ensure(n).get(bytes, at, n);
+                at += n;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return The buffer, holding at least {@code n} more bytes.
+         * @throws EOFException If the file ends before.
+         */
+        private ByteBuffer ensure(int n) throws IOException
+        {
+            if (buffer.remaining() >= n)
+                return buffer;
+            start += buffer.position();
+            buffer.compact();
+            while (buffer.position() < n)
+            {
+                if (channel.read(buffer, start + buffer.position()) < 0)
+                    throw new EOFException("snapshot ends early");
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * Writes little-endian values to a file through a buffer.
+     */
+    private static final class Output implements Closeable
+    {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long flushed;
+
+        Output(Path path) throws IOException
+        {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        long position()
+        {
+            return flushed + buffer.position();
+        }
+
+        void putInt(int value) throws IOException
+        {
+            ensure(4).putInt(value);
+        }
+
+        void putLong(long value) throws IOException
+        {
+            ensure(8).putLong(value);
+        }
+
+        void putFloat(float value) throws IOException
+        {
+            ensure(4).putFloat(value);
+        }
+
+        void putDouble(double value) throws IOException
+        {
+            ensure(8).putDouble(value);
+        }
+
+        void putString(String value) throws IOException
+        {
+            if (value == null)
+            {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int at = 0; at < bytes.length; )
+            {
+                int n = Math.min(bytes.length - at, buffer.capacity());
+                ensure(n).put(bytes, at, n);
+                at += n;
+            }
+        }
+
+        /**
+         * Overwrites consecutive longs at {@code position}, which must have
+         * been written already.
+         */
+        void patch(long position, long... values) throws IOException
+        {
+            flush();
+            ByteBuffer patch = ByteBuffer.allocate(8 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+            for (long value : values)
+                patch.putLong(value);
+            patch.flip();
+            while (patch.hasRemaining())
+                position += channel.write(patch, position);
+        }
+
+        private ByteBuffer ensure(int bytes) throws IOException
+        {
+            if (buffer.remaining() < bytes)
+                flush();
+            return buffer;
+        }
+
+        private void flush() throws IOException
+        {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                flushed += channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                flush();
+            }
+            finally
+            {
+                channel.close();
+            }
+        }
+    }
+}
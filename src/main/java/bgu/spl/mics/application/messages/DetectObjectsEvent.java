@@ -1,17 +1,35 @@
 package bgu.spl.mics.application.messages;
 
+import bgu.spl.mics.DispatchPolicy;
 import bgu.spl.mics.Event;
 import bgu.spl.mics.application.objects.DetectedObject;
 
 public class DetectObjectsEvent implements Event<DetectedObject>
 {
     private DetectedObject object;
-    public DetectObjectsEvent(DetectedObject object)
+    private int time;
+    public DetectObjectsEvent(DetectedObject object, int time)
     {
         this.object = object;
+        this.time = time;
     }
     public DetectedObject getObject()
     {
         return this.object;
     }
+    /**
+     * @return The time the object was detected at.
+     */
+    public int getTime()
+    {
+        return this.time;
+    }
+    /**
+     * @return a dispatch policy that hands every detection of the same object
+     *         to the same LiDAR worker.
+     */
+    public static DispatchPolicy stickyByObjectId()
+    {
+        return DispatchPolicy.stickyByKey(DetectObjectsEvent.class, e -> e.getObject().getId());
+    }
 }
@@ -1,8 +1,8 @@
 package bgu.spl.mics.application.messages;
 
-import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.AcknowledgedBroadcast;
 
-public class TickBroadcast implements Broadcast
+public class TickBroadcast extends AcknowledgedBroadcast
 {
     private int tick;
     public TickBroadcast(int tick)
@@ -1,21 +1,19 @@
 package bgu.spl.mics.application.messages;
 
-import java.util.LinkedList;
+import java.util.List;
 
 import bgu.spl.mics.Event;
 import bgu.spl.mics.application.objects.TrackedObject;
 
-public class TrackedObjectsEvent implements Event
+public class TrackedObjectsEvent implements Event<Boolean>
 {
-    private static TrackedObjectsEvent instance = new TrackedObjectsEvent(); 
-    private static LinkedList<TrackedObject> objects = new LinkedList<>();
-
-    public static TrackedObjectsEvent getInstance()
+    private final List<TrackedObject> objects;
+    public TrackedObjectsEvent(List<TrackedObject> objects)
     {
-        return instance;
+        this.objects = objects;
     }
-    public static void addObject(TrackedObject object)
+    public List<TrackedObject> getObjects()
     {
-        objects.add(object);
+        return this.objects;
     }
 }
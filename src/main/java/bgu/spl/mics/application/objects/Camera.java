@@ -1,23 +1,58 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
  * Represents a camera sensor on the robot.
  * Responsible for detecting objects in the environment.
+ * <p>
+ * The recorded detections are indexed by time once, when the camera is
+ * created. When the recording is dense enough they are kept in an array
+ * indexed by the offset from the first detection time, otherwise in an array
+ * sorted by time that is binary searched.
  */
 public class Camera {
+    /** Recordings with more empty ticks than this per detection are stored sparse. */
+    private static final int MAX_GAP = 4;
+
     private int id;
     private int frequancy;
     private STATUS stat; 
-    private List<StampedDetectedObjects> stamp;
+    // sorted by time, detections at the same time in recording order
+    private final int[] times;
+    private final StampedDetectedObjects[] stamps;
+    // stamps[firstAt[t - minTime]] is the first detection at time t, -1 if none; null if sparse
+    private final int[] firstAt;
+    private final int minTime;
 
     public Camera(int id, int frequancy, List<StampedDetectedObjects> data)
     {
         this.id = id;
         this.frequancy = frequancy;
-        this.stamp = data;
         this.stat = STATUS.UP;
+        this.stamps = data.toArray(new StampedDetectedObjects[0]);
+        Arrays.sort(this.stamps, Comparator.comparingInt(StampedDetectedObjects::getTime));
+        this.times = new int[stamps.length];
+        for (int i = 0; i < stamps.length; i++)
+            times[i] = stamps[i].getTime();
+
+        long span = times.length == 0 ? 0 : (long) times[times.length - 1] - times[0] + 1;
+        if (times.length > 0 && span <= (long) MAX_GAP * times.length)
+        {
+            this.minTime = times[0];
+            this.firstAt = new int[(int) span];
+            Arrays.fill(firstAt, -1);
+            for (int i = times.length - 1; i >= 0; i--)
+                firstAt[times[i] - minTime] = i;
+        }
+        else
+        {
+            this.minTime = 0;
+            this.firstAt = null;
+        }
     }
     public int getId()
     {
@@ -31,14 +66,66 @@ public class Camera {
     {
         return this.frequancy;
     }
+    /**
+     * @param time The detection time.
+     * @return The objects detected at {@code time}, or null if there are none.
+     */
     public List<DetectedObject> getObjects(int time)
     {
-        List<DetectedObject> result = null;
-        for (StampedDetectedObjects obj : this.stamp)
+        int i = indexOf(time);
+        if (i < 0)
+            return null;
+        // the last recording wins if the time was recorded more than once
+        while (i + 1 < times.length && times[i + 1] == time)
+            i++;
+        return stamps[i].getObjects();
+    }
+    /**
+     * @param from The first detection time, inclusive.
+     * @param to   The last detection time, inclusive.
+     * @return The detections recorded between {@code from} and {@code to},
+     *         ordered by time. Empty if there are none.
+     */
+    public List<StampedDetectedObjects> getObjects(int from, int to)
+    {
+        if (from > to || times.length == 0)
+            return Collections.emptyList();
+        int start = lowerBound(from);
+        int end = lowerBound((long) to + 1);
+        if (start >= end)
+            return Collections.emptyList();
+        return Collections.unmodifiableList(Arrays.asList(stamps).subList(start, end));
+    }
+
+    /**
+     * @return The index of the first detection at {@code time}, or -1.
+     */
+    private int indexOf(int time)
+    {
+        if (firstAt != null)
+        {
+            long offset = (long) time - minTime;
+            return offset < 0 || offset >= firstAt.length ? -1 : firstAt[(int) offset];
+        }
+        int i = lowerBound(time);
+        return i < times.length && times[i] == time ? i : -1;
+    }
+
+    /**
+     * @return The index of the first detection at or after {@code time}.
+     */
+    private int lowerBound(long time)
+    {
+        int low = 0;
+        int high = times.length;
+        while (low < high)
         {
-            if(obj.getTime() == time)
-                result = obj.getObjects();
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time)
+                low = mid + 1;
+            else
+                high = mid;
         }
-        return result;
+        return low;
     }
 }
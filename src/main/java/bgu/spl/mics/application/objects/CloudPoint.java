@@ -3,8 +3,33 @@ package bgu.spl.mics.application.objects;
 /**
  * CloudPoint represents a specific point in a 3D space as detected by the LiDAR.
  * These points are used to generate a point cloud representing objects in the environment.
+ * <p>
+ * A CloudPoint does not hold its coordinates: it is a view of one point of a
+ * {@link PointCloud}.
  */
 public class CloudPoint {
+    private final PointCloud cloud;
+    private final int index;
 
-    // TODO: Define fields and methods.
+    public CloudPoint(double x, double y, double z)
+    {
+        this(PointCloud.of(x, y, z), 0);
+    }
+    CloudPoint(PointCloud cloud, int index)
+    {
+        this.cloud = cloud;
+        this.index = index;
+    }
+    public double getX()
+    {
+        return cloud.getX(index);
+    }
+    public double getY()
+    {
+        return cloud.getY(index);
+    }
+    public double getZ()
+    {
+        return cloud.getZ(index);
+    }
 }
@@ -1,13 +1,179 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Manages the fusion of sensor data for simultaneous localization and mapping (SLAM).
  * Combines data from multiple sensors (e.g., LiDAR, camera) to build and update a global map.
  * Implements the Singleton pattern to ensure a single instance of FusionSlam exists.
+ * <p>
+ * A tracked object is placed on the map with the robot's pose at the time
+ * it was detected. The first sighting of an object creates its landmark;
+ * later sightings refine it by averaging each coordinate with the new one.
+ * FusionSlam is used by the FusionSlamService alone.
+ * <p>
+ * The poses of the robot are kept for a bounded number of ticks, see
+ * {@link #setSensorLatency(int)}, so memory does not grow with the length of
+ * the run.
+ * <p>
+ * Landmarks are found by id through a hash map, and by position through a
+ * grid over their centroids (see {@link #getNearestLandmark(double, double)}
+ * and {@link #getLandmarksIn(double, double, double, double)}).
  */
 public class FusionSlam {
     // Singleton instance holder
     private static class FusionSlamHolder {
-        // TODO: Implement singleton instance logic.
+        private static final FusionSlam instance = new FusionSlam();
+    }
+
+    /** The side of a cell of the landmark grid, in meters. */
+    private static final double GRID_CELL_SIZE = 2.0;
+    /** The ticks poses are kept for beyond the latency of the sensors. */
+    private static final int POSE_MARGIN = 64;
+
+    private final Map<String, LandMark> landmarks;
+    private final LandmarkIndex grid;
+    // found or refined since the last takeChangedLandmarks()
+    private final Set<LandMark> changed;
+    private PoseHistory poses;
+    // reused by every object processed, grown to the largest one
+    private double[] globalX = new double[0];
+    private double[] globalY = new double[0];
+
+    FusionSlam()
+    {
+        this.landmarks = new LinkedHashMap<>();
+        this.grid = new LandmarkIndex(GRID_CELL_SIZE);
+        this.changed = new LinkedHashSet<>();
+        this.poses = new PoseHistory(POSE_MARGIN);
+    }
+
+    public static FusionSlam getInstance()
+    {
+        return FusionSlamHolder.instance;
+    }
+    /**
+     * Sets the most ticks a tracked object can reach FusionSlam after the
+     * time it was detected at, which is the frequency of the slowest sensor.
+     * Poses are kept for that many ticks and a margin, and forgotten after.
+     * Poses added so far are forgotten.
+     */
+    public void setSensorLatency(int ticks)
+    {
+        poses = new PoseHistory(ticks + POSE_MARGIN);
+    }
+    public void addPose(Pose pose)
+    {
+        poses.add(pose);
+    }
+    /**
+     * @return The pose of the robot at {@code time}, interpolated between
+     *         the poses around it if there is none at {@code time}; null if
+     *         it is not known yet or no longer kept.
+     */
+    public Pose getPose(int time)
+    {
+        return poses.get(time);
+    }
+    /**
+     * @return The landmarks on the map, in the order they were found.
+     */
+    public List<LandMark> getLandmarks()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(landmarks.values()));
+    }
+    /**
+     * @return The landmarks found or refined since the previous call, or
+     *         since the start for the first one, in the order they first
+     *         changed.
+     */
+    public List<LandMark> takeChangedLandmarks()
+    {
+        List<LandMark> taken = new ArrayList<>(changed);
+        changed.clear();
+        return taken;
+    }
+    public LandMark getLandmark(String id)
+    {
+        return landmarks.get(id);
+    }
+    /**
+     * @return The landmark whose centroid is nearest to (x, y), or null if
+     *         there are no landmarks.
+     */
+    public LandMark getNearestLandmark(double x, double y)
+    {
+        return grid.nearest(x, y);
+    }
+    /**
+     * @return The landmarks whose centroids lie in the given rectangle of the
+     *         map, bounds included, in no particular order.
+     */
+    public List<LandMark> getLandmarksIn(double minX, double minY, double maxX, double maxY)
+    {
+        return grid.within(minX, minY, maxX, maxY);
+    }
+    /**
+     * Places {@code object} on the map.
+     *
+     * @return false if the pose at the object's detection time is not known
+     *         yet, in which case nothing changed.
+     */
+    public boolean process(TrackedObject object)
+    {
+        Pose pose = getPose(object.getTime());
+        if (pose == null)
+            return false;
+        PointCloud local = object.getPoints();
+        int n = local.size();
+        if (n > globalX.length)
+        {
+            globalX = new double[n];
+            globalY = new double[n];
+        }
+        local.copyXY(globalX, globalY);
+        toGlobal(pose, globalX, globalY, n, globalX, globalY);
+        LandMark landmark = landmarks.get(object.getId());
+        if (landmark == null)
+        {
+            landmark = new LandMark(object.getId(), object.getDescription(), globalX, globalY, n);
+            landmarks.put(object.getId(), landmark);
+        }
+        else
+            landmark.refine(globalX, globalY, n);
+        grid.update(landmark);
+        changed.add(landmark);
+        return true;
+    }
+
+    /**
+     * Transforms the first {@code count} points of the columns {@code x} and
+     * {@code y}, relative to the robot at {@code pose}, into the global
+     * coordinate system, and writes them to {@code globalX} and
+     * {@code globalY}. The output columns may be the input ones.
+     * <p>
+     * The rotation is computed once for all the points, and the loop over
+     * them is free of branches and calls so that the JIT can vectorize it.
+     */
+    public static void toGlobal(Pose pose, double[] x, double[] y, int count, double[] globalX, double[] globalY)
+    {
+        double yaw = Math.toRadians(pose.getYaw());
+        double cos = Math.cos(yaw);
+        double sin = Math.sin(yaw);
+        double dx = pose.getX();
+        double dy = pose.getY();
+        for (int i = 0; i < count; i++)
+        {
+            double px = x[i];
+            double py = y[i];
+            globalX[i] = cos * px - sin * py + dx;
+            globalY[i] = sin * px + cos * py + dy;
+        }
     }
 }
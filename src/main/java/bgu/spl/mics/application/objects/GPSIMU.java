@@ -1,9 +1,77 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
 /**
  * Represents the robot's GPS and IMU system.
  * Provides information about the robot's position and movement.
+ * <p>
+ * The recorded poses are sorted by time once, when the GPSIMU is created,
+ * and looked up by binary search.
  */
 public class GPSIMU {
-    // TODO: Define fields and methods.
+    private int currentTick;
+    private STATUS stat;
+    private final Pose[] poses;
+
+    public GPSIMU(List<Pose> poseList)
+    {
+        this.poses = poseList.toArray(new Pose[0]);
+        Arrays.sort(this.poses, Comparator.comparingInt(Pose::getTime));
+        this.stat = STATUS.UP;
+    }
+    public int getCurrentTick()
+    {
+        return this.currentTick;
+    }
+    public void setCurrentTick(int tick)
+    {
+        this.currentTick = tick;
+    }
+    public STATUS getStat()
+    {
+        return this.stat;
+    }
+    public void setStat(STATUS stat)
+    {
+        this.stat = stat;
+    }
+    /**
+     * @return The recorded poses, ordered by time.
+     */
+    public List<Pose> getPoseList()
+    {
+        return Collections.unmodifiableList(Arrays.asList(poses));
+    }
+    /**
+     * @param time The time of the pose.
+     * @return The pose recorded at {@code time}, or null if there is none.
+     */
+    public Pose getPose(int time)
+    {
+        int low = 0;
+        int high = poses.length - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int t = poses[mid].getTime();
+            if (t < time)
+                low = mid + 1;
+            else if (t > time)
+                high = mid - 1;
+            else
+                return poses[mid];
+        }
+        return null;
+    }
+    /**
+     * @return The time of the last recorded pose, 0 if there are none.
+     */
+    public int getLastTime()
+    {
+        return poses.length == 0 ? 0 : poses[poses.length - 1].getTime();
+    }
 }
@@ -1,9 +1,137 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Represents a landmark in the environment map.
  * Landmarks are identified and updated by the FusionSlam service.
+ * <p>
+ * The coordinates are kept in primitive arrays that refining the landmark
+ * updates in place, so that a refinement allocates nothing unless an
+ * observation has more points than the landmark had so far. The
+ * {@link PointCloud} handed out by {@link #getPoints()} is a copy, made on
+ * the first call after a refinement and kept until the next; {@link #size()},
+ * {@link #getX(int)} and {@link #getY(int)} read the arrays themselves.
  */
 public class LandMark {
-    // TODO: Define fields and methods.
+    private final String id;
+    private final String description;
+    private double[] x, y;
+    private int size;
+    private int observations;
+    // the coordinates as of the last refinement, made on demand
+    private PointCloud points;
+
+    public LandMark(String id, String description, PointCloud coordinates)
+    {
+        this.id = id;
+        this.description = description;
+        this.size = coordinates.size();
+        this.x = new double[size];
+        this.y = new double[size];
+        for (int i = 0; i < size; i++)
+        {
+            x[i] = coordinates.getX(i);
+            y[i] = coordinates.getY(i);
+        }
+        this.observations = 1;
+    }
+    LandMark(String id, String description, double[] x, double[] y, int size)
+    {
+        this.id = id;
+        this.description = description;
+        this.size = size;
+        this.x = Arrays.copyOf(x, size);
+        this.y = Arrays.copyOf(y, size);
+        this.observations = 1;
+    }
+    public String getId()
+    {
+        return this.id;
+    }
+    public String getDescription()
+    {
+        return this.description;
+    }
+    /**
+     * @return The number of observations the landmark was made of.
+     */
+    public int getObservations()
+    {
+        return this.observations;
+    }
+    /**
+     * @return The coordinates of the landmark in the global map.
+     */
+    public PointCloud getPoints()
+    {
+        if (points == null)
+        {
+            PointCloud.Builder builder = new PointCloud.Builder(PointCloud.Precision.DOUBLE, size);
+            for (int i = 0; i < size; i++)
+                builder.add(x[i], y[i], 0);
+            points = builder.build();
+        }
+        return points;
+    }
+    public List<CloudPoint> getCoordinates()
+    {
+        return getPoints().asList();
+    }
+
+    /**
+     * @return The number of points of the landmark. With {@link #getX(int)}
+     *         and {@link #getY(int)} the points can be read without the copy
+     *         {@link #getPoints()} makes.
+     */
+    public int size()
+    {
+        return size;
+    }
+    /**
+     * @return The x coordinate of the i-th point in the global map.
+     */
+    public double getX(int i)
+    {
+        return x[i];
+    }
+    /**
+     * @return The y coordinate of the i-th point in the global map.
+     */
+    public double getY(int i)
+    {
+        return y[i];
+    }
+
+    /**
+     * Refines the landmark with another observation of it, the first
+     * {@code n} points of {@code gx} and {@code gy} in global coordinates:
+     * each point becomes the average of itself and the point of the
+     * observation at the same index. Points of the observation past the
+     * landmark's last point are added as they are, and points of the landmark
+     * past the observation's last point are kept.
+     */
+    void refine(double[] gx, double[] gy, int n)
+    {
+        if (n > x.length)
+        {
+            x = Arrays.copyOf(x, n);
+            y = Arrays.copyOf(y, n);
+        }
+        int common = Math.min(size, n);
+        for (int i = 0; i < common; i++)
+        {
+            x[i] = (x[i] + gx[i]) / 2;
+            y[i] = (y[i] + gy[i]) / 2;
+        }
+        if (n > common)
+        {
+            System.arraycopy(gx, common, x, common, n - common);
+            System.arraycopy(gy, common, y, common, n - common);
+        }
+        size = Math.max(size, n);
+        observations++;
+        points = null;
+    }
 }
@@ -0,0 +1,232 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid over the centroids of landmarks, for nearest-landmark and
+ * region queries.
+ * <p>
+ * Only the cells that hold landmarks are kept, in a hash map keyed by the
+ * cell's coordinates, so the grid costs nothing for empty space however far
+ * apart landmarks are. A query looks at the cells around its point or region
+ * only, which keeps it independent of the number of landmarks as long as
+ * cells are not crowded. A landmark is re-indexed when refining it moves its
+ * centroid to another cell.
+ */
+final class LandmarkIndex {
+    private final double cellSize;
+    private final Map<String, Entry> entries;
+    private final Map<Long, List<Entry>> cells;
+    // the bounds of the occupied cells, to stop searching past them
+    private int minCellX = Integer.MAX_VALUE, minCellY = Integer.MAX_VALUE;
+    private int maxCellX = Integer.MIN_VALUE, maxCellY = Integer.MIN_VALUE;
+
+    /**
+     * @param cellSize The side of a grid cell, in the units of the map.
+     */
+    LandmarkIndex(double cellSize)
+    {
+        if (!(cellSize > 0))
+            throw new IllegalArgumentException("cell size must be positive: " + cellSize);
+        this.cellSize = cellSize;
+        this.entries = new HashMap<>();
+        this.cells = new HashMap<>();
+    }
+
+    /**
+     * Indexes {@code landmark} at its current centroid, moving it if it was
+     * indexed elsewhere. Landmarks without coordinates are not indexed.
+     */
+    void update(LandMark landmark)
+    {
+        int n = landmark.size();
+        Entry entry = entries.get(landmark.getId());
+        if (n == 0)
+        {
+            if (entry != null)
+                remove(entry);
+            return;
+        }
+        double x = 0;
+        double y = 0;
+        for (int i = 0; i < n; i++)
+        {
+            x += landmark.getX(i);
+            y += landmark.getY(i);
+        }
+        x /= n;
+        y /= n;
+        int cx = cell(x);
+        int cy = cell(y);
+        if (entry != null && entry.cellX == cx && entry.cellY == cy)
+        {
+            entry.x = x;
+            entry.y = y;
+            return;
+        }
+        if (entry != null)
+            remove(entry);
+        entry = new Entry(landmark, x, y, cx, cy);
+        entries.put(landmark.getId(), entry);
+        cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>()).add(entry);
+        minCellX = Math.min(minCellX, cx);
+        minCellY = Math.min(minCellY, cy);
+        maxCellX = Math.max(maxCellX, cx);
+        maxCellY = Math.max(maxCellY, cy);
+    }
+
+    /**
+     * @return The landmark whose centroid is nearest to (x, y), or null if
+     *         no landmark is indexed.
+     */
+    LandMark nearest(double x, double y)
+    {
+        if (entries.isEmpty())
+            return null;
+        int cx = cell(x);
+        int cy = cell(y);
+        // rings beyond the occupied bounds hold nothing
+        long reach = Math.max(Math.max((long) cx - minCellX, (long) maxCellX - cx),
+                Math.max((long) cy - minCellY, (long) maxCellY - cy));
+        Entry best = null;
+        for (int ring = 0; ring <= reach; ring++)
+        {
+            long side = 2L * ring + 1;
+            if (side * side > 4L * cells.size())
+            {
+                // the search area outgrew the occupied cells: scan those instead
+                for (List<Entry> cell : cells.values())
+                    best = nearestIn(cell, x, y, best);
+                break;
+            }
+            for (int i = -ring; i <= ring; i++)
+            {
+                best = nearestIn(cx + i, cy - ring, x, y, best);
+                if (ring > 0)
+                    best = nearestIn(cx + i, cy + ring, x, y, best);
+                if (i > -ring && i < ring)
+                {
+                    best = nearestIn(cx - ring, cy + i, x, y, best);
+                    best = nearestIn(cx + ring, cy + i, x, y, best);
+                }
+            }
+            // every centroid in the next rings is at least ring cells away
+            if (best != null && Math.sqrt(distanceSquared(best, x, y)) <= ring * cellSize)
+                break;
+        }
+        return best.landmark;
+    }
+
+    /**
+     * @return The landmarks whose centroids lie in the rectangle, bounds
+     *         included, in no particular order.
+     */
+    List<LandMark> within(double minX, double minY, double maxX, double maxY)
+    {
+        List<LandMark> found = new ArrayList<>();
+        if (entries.isEmpty() || minX > maxX || minY > maxY)
+            return found;
+        int fromX = Math.max(cell(minX), minCellX);
+        int fromY = Math.max(cell(minY), minCellY);
+        int toX = Math.min(cell(maxX), maxCellX);
+        int toY = Math.min(cell(maxY), maxCellY);
+        if (((long) toX - fromX + 1) * ((long) toY - fromY + 1) > cells.size())
+        {
+            // a region larger than the occupied cells is cheaper to scan by cell
+            for (List<Entry> cell : cells.values())
+                collect(cell, minX, minY, maxX, maxY, found);
+            return found;
+        }
+        for (int cx = fromX; cx <= toX; cx++)
+        {
+            for (int cy = fromY; cy <= toY; cy++)
+            {
+                List<Entry> cell = cells.get(key(cx, cy));
+                if (cell != null)
+                    collect(cell, minX, minY, maxX, maxY, found);
+            }
+        }
+        return found;
+    }
+
+    int size()
+    {
+        return entries.size();
+    }
+
+    private Entry nearestIn(int cx, int cy, double x, double y, Entry best)
+    {
+        List<Entry> cell = cells.get(key(cx, cy));
+        return cell == null ? best : nearestIn(cell, x, y, best);
+    }
+
+    private static Entry nearestIn(List<Entry> cell, double x, double y, Entry best)
+    {
+        double bestDistance = best == null ? Double.POSITIVE_INFINITY : distanceSquared(best, x, y);
+        for (Entry e : cell)
+        {
+            double d = distanceSquared(e, x, y);
+            if (d < bestDistance)
+            {
+                best = e;
+                bestDistance = d;
+            }
+        }
+        return best;
+    }
+
+    private static void collect(List<Entry> cell, double minX, double minY, double maxX, double maxY, List<LandMark> found)
+    {
+        for (Entry e : cell)
+        {
+            if (e.x >= minX && e.x <= maxX && e.y >= minY && e.y <= maxY)
+                found.add(e.landmark);
+        }
+    }
+
+    private void remove(Entry entry)
+    {
+        entries.remove(entry.landmark.getId());
+        Long key = key(entry.cellX, entry.cellY);
+        List<Entry> cell = cells.get(key);
+        cell.remove(entry);
+        if (cell.isEmpty())
+            cells.remove(key);
+    }
+
+    private int cell(double coordinate)
+    {
+        double c = Math.floor(coordinate / cellSize);
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, c));
+    }
+
+    private static long key(int cx, int cy)
+    {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private static double distanceSquared(Entry e, double x, double y)
+    {
+        double dx = e.x - x;
+        double dy = e.y - y;
+        return dx * dx + dy * dy;
+    }
+
+    private static final class Entry {
+        private final LandMark landmark;
+        private final int cellX, cellY;
+        private double x, y;
+
+        private Entry(LandMark landmark, double x, double y, int cellX, int cellY)
+        {
+            this.landmark = landmark;
+            this.x = x;
+            this.y = y;
+            this.cellX = cellX;
+            this.cellY = cellY;
+        }
+    }
+}
@@ -1,10 +1,69 @@
 package bgu.spl.mics.application.objects;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
 /**
  * LiDarDataBase is a singleton class responsible for managing LiDAR data.
  * It provides access to cloud point data and other relevant information for tracked objects.
+ * <p>
+ * The data file is memory-mapped rather than read into the heap. Loading only
+ * scans it once to record where each stamp starts and ends, keyed by its time
+ * and object id; the cloud points of a stamp are parsed when it is asked for.
+ * Startup time and heap usage therefore depend on the number of stamps, not
+ * on the number of points recorded. Parsed points are stored in columns of the
+ * database's {@link PointCloud.Precision}.
+ * <p>
+ * The stamps may also come from a binary snapshot of the data file, see
+ * {@link #loadSnapshot(String, long, PointCloud.Precision)}.
  */
 public class LiDarDataBase {
+    /** Files larger than this are mapped in several chunks. */
+    private static final long CHUNK_SIZE = Integer.MAX_VALUE;
+
+    private static volatile LiDarDataBase instance;
+
+    private final MappedByteBuffer[] chunks;
+    private final PointCloud.Precision precision;
+    private final boolean binary;
+    private final Map<Key, Integer> index;
+    // where each stamp starts in the file, and its length
+    private Key[] keys;
+    private long[] offsets;
+    private int[] lengths;
+    // counted apart from the index, where a repeated time and id has one key
+    private int stamps;
+    private int lastTime;
+
+    private LiDarDataBase(MappedByteBuffer[] chunks, PointCloud.Precision precision, boolean binary)
+    {
+        this.chunks = chunks;
+        this.precision = precision;
+        this.binary = binary;
+        this.index = new HashMap<>();
+        this.keys = new Key[16];
+        this.offsets = new long[16];
+        this.lengths = new int[16];
+    }
 
     /**
      * Returns the singleton instance of LiDarDataBase.
@@ -13,7 +72,409 @@ public class LiDarDataBase {
      * @return The singleton instance of LiDarDataBase.
      */
     public static LiDarDataBase getInstance(String filePath) {
-        // TODO: Implement this
-        return null;
+        return getInstance(filePath, PointCloud.Precision.DOUBLE);
+    }
+
+    /**
+     * Returns the singleton instance of LiDarDataBase, loading it in
+     * {@code precision} if it was not loaded yet.
+     *
+     * @param filePath  The path to the LiDAR data file.
+     * @param precision The precision to store cloud points in.
+     * @return The singleton instance of LiDarDataBase.
+     */
+    public static LiDarDataBase getInstance(String filePath, PointCloud.Precision precision) {
+        LiDarDataBase db = instance;
+        if (db != null)
+            return db;
+        synchronized (LiDarDataBase.class)
+        {
+            if (instance == null)
+            {
+                try
+                {
+                    instance = load(filePath, precision);
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException("cannot load LiDAR data from " + filePath, e);
+                }
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Indexes the LiDAR data file at {@code filePath} into a new database,
+     * independent of the singleton instance.
+     *
+     * @param filePath  The path to the LiDAR data file.
+     * @param precision The precision to store cloud points in.
+     * @return The new database.
+     * @throws IOException If the file cannot be read.
+     * @throws JsonParseException If the file is not a JSON array of stamps.
+     */
+    public static LiDarDataBase load(String filePath, PointCloud.Precision precision) throws IOException
+    {
+        LiDarDataBase db = new LiDarDataBase(map(filePath), precision, false);
+        db.scan();
+        return db;
+    }
+
+    /**
+     * Loads the LiDAR data from a binary snapshot file into a new database,
+     * independent of the singleton instance.
+     * <p>
+     * All numbers in the snapshot are little-endian and strings are UTF-8
+     * prefixed by their length in bytes as an int. The index at
+     * {@code indexOffset} is the number of stamps followed, for each stamp, by
+     * its time, its object id, and the long offset and int length of its
+     * block in the file. A block is the number of points n followed by n x
+     * coordinates, n y coordinates and n z coordinates, as doubles.
+     *
+     * @param filePath    The path to the snapshot file.
+     * @param indexOffset Where the stamp index starts in the file.
+     * @param precision   The precision to store cloud points in.
+     * @return The new database.
+     * @throws IOException If the file cannot be read or the index is corrupt.
+     */
+    public static LiDarDataBase loadSnapshot(String filePath, long indexOffset, PointCloud.Precision precision) throws IOException
+    {
+        LiDarDataBase db = new LiDarDataBase(map(filePath), precision, true);
+        try
+        {
+            long position = indexOffset;
+            int stamps = db.readInt(position);
+            position += 4;
+            for (int stamp = 0; stamp < stamps; stamp++)
+            {
+                int time = db.readInt(position);
+                int idLength = db.readInt(position + 4);
+                String id = StandardCharsets.UTF_8.decode(db.bytes(position + 8, idLength)).toString();
+                position += 8 + idLength;
+                ByteBuffer location = db.bytes(position, 12).order(ByteOrder.LITTLE_ENDIAN);
+                position += 12;
+                db.add(stamp, location.getLong(), location.getInt(), time, id);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            throw new IOException("corrupt LiDAR snapshot index in " + filePath, e);
+        }
+        return db;
+    }
+
+    /**
+     * Materializes every stamp in turn, in the order of the data file.
+     *
+     * @param action The action to perform on each stamp.
+     */
+    public void forEach(Consumer<StampedCloudPoints> action)
+    {
+        for (int stamp = 0; stamp < stamps; stamp++)
+            action.accept(read(stamp));
+    }
+
+    private static MappedByteBuffer[] map(String filePath) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+            for (int i = 0; i < chunks.length; i++)
+            {
+                long position = i * CHUNK_SIZE;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_SIZE, size - position));
+            }
+            return chunks;
+        }
+    }
+
+    /**
+     * @param time The time the cloud points were recorded at.
+     * @param id   The id of the object the cloud points belong to.
+     * @return The cloud points of object {@code id} at {@code time}, the last
+     *         ones recorded if there are several, or null if none were
+     *         recorded.
+     */
+    public StampedCloudPoints getCloudPoints(int time, String id)
+    {
+        Integer stamp = index.get(new Key(time, id));
+        return stamp == null ? null : read(stamp);
+    }
+
+    /**
+     * @return The number of stamps in the database, counting every stamp of
+     *         a time and id recorded more than once.
+     */
+    public int size()
+    {
+        return stamps;
+    }
+
+    /**
+     * @return The latest time cloud points were recorded at, 0 if there are none.
+     */
+    public int getLastTime()
+    {
+        return lastTime;
+    }
+
+    /**
+     * Finds the top-level objects of the array in the file and indexes each of
+     * them by the time and id it starts with.
+     */
+    private void scan() throws IOException
+    {
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        long start = -1;
+        int stamps = 0;
+        long position = 0;
+        for (MappedByteBuffer chunk : chunks)
+        {
+            for (int i = 0, limit = chunk.limit(); i < limit; i++, position++)
+            {
+                byte b = chunk.get(i);
+                if (inString)
+                {
+                    if (escaped)
+                        escaped = false;
+                    else if (b == '\\')
+                        escaped = true;
+                    else if (b == '"')
+                        inString = false;
+                    continue;
+                }
+                switch (b)
+                {
+                    case '"':
+                        inString = true;
+                        break;
+                    case '[':
+                    case '{':
+                        if (depth == 1 && b == '{')
+                            start = position;
+                        depth++;
+                        break;
+                    case ']':
+                    case '}':
+                        depth--;
+                        if (depth == 1 && b == '}')
+                            addJson(stamps++, start, position + 1 - start);
+                        else if (depth < 0)
+                            throw new JsonParseException("unbalanced LiDAR data at offset " + position);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        if (depth != 0 || inString)
+            throw new JsonParseException("truncated LiDAR data");
+    }
+
+    private void addJson(int stamp, long start, long length) throws IOException
+    {
+        if (length > Integer.MAX_VALUE)
+            throw new JsonParseException("LiDAR stamp at offset " + start + " is too large");
+        Integer time = null;
+        String id = null;
+        try (JsonReader reader = open(start, (int) length))
+        {
+            reader.beginObject();
+            // time and id come before the cloud points, which need not be read
+            while ((time == null || id == null) && reader.hasNext())
+            {
+                String name = reader.nextName();
+                if (name.equals("time"))
+                    time = reader.nextInt();
+                else if (name.equals("id"))
+                    id = reader.nextString();
+                else
+                    reader.skipValue();
+            }
+        }
+        if (time == null || id == null)
+            throw new JsonParseException("LiDAR stamp at offset " + start + " has no time or id");
+        add(stamp, start, (int) length, time, id);
+    }
+
+    private void add(int stamp, long start, int length, int time, String id)
+    {
+        if (stamp == offsets.length)
+        {
+            keys = Arrays.copyOf(keys, stamp * 2);
+            offsets = Arrays.copyOf(offsets, stamp * 2);
+            lengths = Arrays.copyOf(lengths, stamp * 2);
+        }
+        Key key = new Key(time, id);
+        keys[stamp] = key;
+        offsets[stamp] = start;
+        lengths[stamp] = length;
+        index.put(key, stamp);
+        stamps = Math.max(stamps, stamp + 1);
+        lastTime = Math.max(lastTime, time);
+    }
+
+    private StampedCloudPoints read(int stamp)
+    {
+        if (binary)
+            return readBlock(keys[stamp], bytes(offsets[stamp], lengths[stamp]), precision);
+        try (JsonReader reader = open(offsets[stamp], lengths[stamp]))
+        {
+            return readStamp(reader, precision);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonReader open(long start, int length)
+    {
+        InputStream in = new BufferInputStream(bytes(start, length));
+        return new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private int readInt(long position)
+    {
+        return bytes(position, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+
+    /**
+     * @return The bytes of the file from {@code start} on, without copying them
+     *         unless they span two chunks.
+     */
+    private ByteBuffer bytes(long start, int length)
+    {
+        int chunk = (int) (start / CHUNK_SIZE);
+        int offset = (int) (start % CHUNK_SIZE);
+        ByteBuffer view = chunks[chunk].duplicate();
+        if (offset + (long) length <= view.limit())
+        {
+            view.position(offset);
+            view.limit(offset + length);
+            return view.slice();
+        }
+        ByteBuffer copy = ByteBuffer.allocate(length);
+        for (int left = length; left > 0; chunk++, offset = 0)
+        {
+            view = chunks[chunk].duplicate();
+            view.position(offset);
+            view.limit(offset + Math.min(left, view.limit() - offset));
+            left -= view.remaining();
+            copy.put(view);
+        }
+        copy.flip();
+        return copy;
+    }
+
+    private static StampedCloudPoints readBlock(Key key, ByteBuffer block, PointCloud.Precision precision)
+    {
+        block.order(ByteOrder.LITTLE_ENDIAN);
+        int n = block.getInt();
+        DoubleBuffer columns = block.asDoubleBuffer();
+        PointCloud.Builder builder = new PointCloud.Builder(precision, n);
+        for (int i = 0; i < n; i++)
+            builder.add(columns.get(i), columns.get(n + i), columns.get(2 * n + i));
+        return new StampedCloudPoints(key.time, key.id, builder.build());
+    }
+
+    private static StampedCloudPoints readStamp(JsonReader reader, PointCloud.Precision precision) throws IOException
+    {
+        int time = 0;
+        String id = null;
+        PointCloud points = PointCloud.empty();
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            String name = reader.nextName();
+            if (name.equals("time"))
+                time = reader.nextInt();
+            else if (name.equals("id"))
+                id = reader.nextString();
+            else if (name.equals("cloudPoints"))
+            {
+                PointCloud.Builder builder = new PointCloud.Builder(precision, 64);
+                reader.beginArray();
+                while (reader.hasNext())
+                    readPoint(reader, builder);
+                reader.endArray();
+                points = builder.build();
+            }
+            else
+                reader.skipValue();
+        }
+        reader.endObject();
+        return new StampedCloudPoints(time, id, points);
+    }
+
+    private static void readPoint(JsonReader reader, PointCloud.Builder builder) throws IOException
+    {
+        reader.beginArray();
+        double x = reader.nextDouble();
+        double y = reader.nextDouble();
+        double z = reader.peek() == JsonToken.END_ARRAY ? 0 : reader.nextDouble();
+        while (reader.hasNext())
+            reader.skipValue();
+        reader.endArray();
+        builder.add(x, y, z);
+    }
+
+    private static final class Key
+    {
+        private final int time;
+        private final String id;
+
+        private Key(int time, String id)
+        {
+            this.time = time;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return time == other.time && Objects.equals(id, other.id);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * time + Objects.hashCode(id);
+        }
+    }
+
+    private static final class BufferInputStream extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (len == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
     }
 }
@@ -1,11 +1,85 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
 /**
  * LiDarWorkerTracker is responsible for managing a LiDAR worker.
  * It processes DetectObjectsEvents and generates TrackedObjectsEvents by using data from the LiDarDataBase.
  * Each worker tracks objects and sends observations to the FusionSlam service.
+ * <p>
+ * An object detected at time t is tracked right away but only released at
+ * time t + frequency. A worker is used by its LiDarService alone.
  */
 public class LiDarWorkerTracker {
+    private final int id;
+    private final int frequency;
+    private STATUS stat;
+    private final LiDarDataBase dataBase;
+    private final PriorityQueue<TrackedObject> pending;
+    private List<TrackedObject> lastTrackedObjects;
 
-    // TODO: Define fields and methods.
+    public LiDarWorkerTracker(int id, int frequency, LiDarDataBase dataBase)
+    {
+        this.id = id;
+        this.frequency = frequency;
+        this.stat = STATUS.UP;
+        this.dataBase = dataBase;
+        this.pending = new PriorityQueue<>(Comparator.comparingInt(TrackedObject::getTime));
+        this.lastTrackedObjects = Collections.emptyList();
+    }
+    public int getId()
+    {
+        return this.id;
+    }
+    public int getFreq()
+    {
+        return this.frequency;
+    }
+    public STATUS getStat()
+    {
+        return this.stat;
+    }
+    public void setStat(STATUS stat)
+    {
+        this.stat = stat;
+    }
+    /**
+     * Looks up the cloud points of {@code object} as detected at {@code time}
+     * and holds the tracked object until it is due.
+     *
+     * @return false if the LiDAR recorded no cloud points for the object.
+     */
+    public boolean track(DetectedObject object, int time)
+    {
+        StampedCloudPoints points = dataBase.getCloudPoints(time, object.getId());
+        if (points == null)
+            return false;
+        pending.add(new TrackedObject(object.getId(), time, object.getDescription(), points.getPoints()));
+        return true;
+    }
+    /**
+     * @param tick The current time.
+     * @return The tracked objects due by {@code tick}, ordered by detection
+     *         time. Empty if there are none.
+     */
+    public List<TrackedObject> release(int tick)
+    {
+        List<TrackedObject> due = new ArrayList<>();
+        while (!pending.isEmpty() && pending.peek().getTime() + frequency <= tick)
+            due.add(pending.poll());
+        if (!due.isEmpty())
+            lastTrackedObjects = due;
+        return due;
+    }
+    /**
+     * @return The objects released last.
+     */
+    public List<TrackedObject> getLastTrackedObjects()
+    {
+        return Collections.unmodifiableList(lastTrackedObjects);
+    }
 }
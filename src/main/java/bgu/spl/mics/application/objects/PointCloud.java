@@ -0,0 +1,227 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The points of a point cloud, stored column by column.
+ * <p>
+ * The x, y and z coordinates are kept in three primitive arrays, of doubles
+ * or of floats depending on the {@link Precision}, instead of one object per
+ * point. A point costs 24 bytes in double precision and 12 in float
+ * precision; the {@link CloudPoint}s handed out are views of a single index
+ * in the columns.
+ */
+public final class PointCloud {
+    /** The precision coordinates are stored in. */
+    public enum Precision {
+        FLOAT, DOUBLE
+    }
+
+    private static final PointCloud EMPTY = new Builder(Precision.DOUBLE, 0).build();
+
+    private final int size;
+    // one set of columns is null, depending on the precision
+    private final double[] x, y, z;
+    private final float[] fx, fy, fz;
+
+    private PointCloud(int size, double[] x, double[] y, double[] z, float[] fx, float[] fy, float[] fz)
+    {
+        this.size = size;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.fx = fx;
+        this.fy = fy;
+        this.fz = fz;
+    }
+
+    /**
+     * @return A point cloud without points.
+     */
+    public static PointCloud empty()
+    {
+        return EMPTY;
+    }
+
+    /**
+     * @return A point cloud of a single point, in double precision.
+     */
+    public static PointCloud of(double x, double y, double z)
+    {
+        return new Builder(Precision.DOUBLE, 1).add(x, y, z).build();
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+    public Precision getPrecision()
+    {
+        return x != null ? Precision.DOUBLE : Precision.FLOAT;
+    }
+    public double getX(int i)
+    {
+        check(i);
+        return x != null ? x[i] : fx[i];
+    }
+    public double getY(int i)
+    {
+        check(i);
+        return y != null ? y[i] : fy[i];
+    }
+    public double getZ(int i)
+    {
+        check(i);
+        return z != null ? z[i] : fz[i];
+    }
+    /**
+     * Copies the x and y coordinates into the first {@link #size()} entries
+     * of {@code xs} and {@code ys}, for processing points in bulk.
+     */
+    public void copyXY(double[] xs, double[] ys)
+    {
+        if (x != null)
+        {
+            System.arraycopy(x, 0, xs, 0, size);
+            System.arraycopy(y, 0, ys, 0, size);
+            return;
+        }
+        for (int i = 0; i < size; i++)
+        {
+            xs[i] = fx[i];
+            ys[i] = fy[i];
+        }
+    }
+    /**
+     * @return A view of the {@code i}th point.
+     */
+    public CloudPoint get(int i)
+    {
+        check(i);
+        return new CloudPoint(this, i);
+    }
+    /**
+     * @return The points as a read-only list of views.
+     */
+    public List<CloudPoint> asList()
+    {
+        return new AbstractList<CloudPoint>()
+        {
+            @Override
+            public CloudPoint get(int i)
+            {
+                return PointCloud.this.get(i);
+            }
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+        };
+    }
+
+    private void check(int i)
+    {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("point " + i + " of " + size);
+    }
+
+    /**
+     * Collects points into a {@link PointCloud}.
+     */
+    public static final class Builder {
+        private final Precision precision;
+        private int size;
+        private boolean built;
+        private double[] x, y, z;
+        private float[] fx, fy, fz;
+
+        /**
+         * @param precision The precision to store coordinates in.
+         * @param capacity  The number of points expected.
+         */
+        public Builder(Precision precision, int capacity)
+        {
+            this.precision = precision;
+            if (precision == Precision.DOUBLE)
+            {
+                x = new double[capacity];
+                y = new double[capacity];
+                z = new double[capacity];
+            }
+            else
+            {
+                fx = new float[capacity];
+                fy = new float[capacity];
+                fz = new float[capacity];
+            }
+        }
+
+        public Builder add(double px, double py, double pz)
+        {
+            checkOpen();
+            if (precision == Precision.DOUBLE)
+            {
+                if (size == x.length)
+                {
+                    int capacity = Math.max(size * 2, 8);
+                    x = Arrays.copyOf(x, capacity);
+                    y = Arrays.copyOf(y, capacity);
+                    z = Arrays.copyOf(z, capacity);
+                }
+                x[size] = px;
+                y[size] = py;
+                z[size] = pz;
+            }
+            else
+            {
+                if (size == fx.length)
+                {
+                    int capacity = Math.max(size * 2, 8);
+                    fx = Arrays.copyOf(fx, capacity);
+                    fy = Arrays.copyOf(fy, capacity);
+                    fz = Arrays.copyOf(fz, capacity);
+                }
+                fx[size] = (float) px;
+                fy[size] = (float) py;
+                fz[size] = (float) pz;
+            }
+            size++;
+            return this;
+        }
+
+        /**
+         * Builds the point cloud. The columns are handed over without copying
+         * if the capacity was exact, so the builder cannot be used afterwards.
+         *
+         * @return The points added so far, in columns trimmed to their size.
+         */
+        public PointCloud build()
+        {
+            checkOpen();
+            built = true;
+            if (precision == Precision.DOUBLE)
+                return new PointCloud(size, trim(x), trim(y), trim(z), null, null, null);
+            return new PointCloud(size, null, null, null, trim(fx), trim(fy), trim(fz));
+        }
+
+        private double[] trim(double[] column)
+        {
+            return column.length == size ? column : Arrays.copyOf(column, size);
+        }
+
+        private float[] trim(float[] column)
+        {
+            return column.length == size ? column : Arrays.copyOf(column, size);
+        }
+
+        private void checkOpen()
+        {
+            if (built)
+                throw new IllegalStateException("the point cloud was already built");
+        }
+    }
+}
@@ -5,5 +5,35 @@ package bgu.spl.mics.application.objects;
  * Includes x, y coordinates and the yaw angle relative to a global coordinate system.
  */
 public class Pose {
-    // TODO: Define fields and methods.
+    private final int time;
+    private final float x;
+    private final float y;
+    private final float yaw;
+
+    public Pose(int time, float x, float y, float yaw)
+    {
+        this.time = time;
+        this.x = x;
+        this.y = y;
+        this.yaw = yaw;
+    }
+    public int getTime()
+    {
+        return this.time;
+    }
+    public float getX()
+    {
+        return this.x;
+    }
+    public float getY()
+    {
+        return this.y;
+    }
+    /**
+     * @return The yaw angle in degrees.
+     */
+    public float getYaw()
+    {
+        return this.yaw;
+    }
 }
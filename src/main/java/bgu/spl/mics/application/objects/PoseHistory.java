@@ -0,0 +1,97 @@
+package bgu.spl.mics.application.objects;
+
+/**
+ * The poses of the robot over a sliding window of ticks, in a ring buffer
+ * indexed by tick.
+ * <p>
+ * The window ends at the latest tick a pose was added for and spans the
+ * capacity of the ring, a power of two, so finding the pose at a tick is a
+ * single array access and memory does not grow with the length of the run.
+ * Poses that fall out of the window are forgotten. A tick inside the window
+ * without a pose of its own gets one interpolated between the nearest poses
+ * around it.
+ */
+final class PoseHistory {
+    private final Pose[] ring;
+    private final int mask;
+    private int latest = Integer.MIN_VALUE;
+
+    /**
+     * @param retention The number of ticks to keep poses for, at least.
+     */
+    PoseHistory(int retention)
+    {
+        if (retention < 1 || retention > 1 << 30)
+            throw new IllegalArgumentException("retention out of range: " + retention);
+        int capacity = Integer.highestOneBit(retention);
+        if (capacity < retention)
+            capacity <<= 1;
+        this.ring = new Pose[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return The number of ticks poses are kept for.
+     */
+    int capacity()
+    {
+        return ring.length;
+    }
+
+    /**
+     * Adds {@code pose}, moving the window forward if it is the latest one.
+     * A pose older than the window is ignored.
+     */
+    void add(Pose pose)
+    {
+        int time = pose.getTime();
+        if (latest != Integer.MIN_VALUE && time <= latest - ring.length)
+            return;
+        if (latest == Integer.MIN_VALUE || time > latest)
+            latest = time;
+        ring[time & mask] = pose;
+    }
+
+    /**
+     * @return The pose at {@code time}, interpolated if it is missing, or
+     *         null if there is no pose after {@code time} yet, no pose before
+     *         it to interpolate from, or {@code time} fell out of the window.
+     */
+    Pose get(int time)
+    {
+        if (latest == Integer.MIN_VALUE || time > latest || time <= latest - ring.length)
+            return null;
+        Pose pose = at(time);
+        if (pose != null)
+            return pose;
+        Pose before = null;
+        for (int t = time - 1; t > latest - ring.length && before == null; t--)
+            before = at(t);
+        Pose after = null;
+        for (int t = time + 1; t <= latest && after == null; t++)
+            after = at(t);
+        // the pose at latest is there, so only before can be missing
+        return before == null ? null : interpolate(before, after, time);
+    }
+
+    private Pose at(int time)
+    {
+        Pose pose = ring[time & mask];
+        return pose != null && pose.getTime() == time ? pose : null;
+    }
+
+    /**
+     * Interpolates linearly between {@code before} and {@code after}, turning
+     * the short way around.
+     */
+    private static Pose interpolate(Pose before, Pose after, int time)
+    {
+        float f = (float) (time - before.getTime()) / (after.getTime() - before.getTime());
+        float turn = after.getYaw() - before.getYaw();
+        turn -= 360 * Math.round(turn / 360);
+        return new Pose(time,
+                before.getX() + f * (after.getX() - before.getX()),
+                before.getY() + f * (after.getY() - before.getY()),
+                before.getYaw() + f * turn);
+    }
+}
@@ -0,0 +1,101 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Holds tracked objects that reached FusionSlam before the pose at their
+ * detection time, ordered by detection time, until that pose arrives.
+ * <p>
+ * Time is measured in the ticks of the poses: an object parked when the
+ * latest pose was at tick p and released by the pose at tick q waited q - p
+ * ticks. The buffer keeps the number of objects parked, the most it held at
+ * once, and the total and longest waits. A buffer is used by the
+ * FusionSlamService alone.
+ */
+public class ReorderBuffer {
+    private static final class Parked {
+        private final TrackedObject object;
+        private final int since;
+
+        private Parked(TrackedObject object, int since)
+        {
+            this.object = object;
+            this.since = since;
+        }
+    }
+
+    private final PriorityQueue<Parked> heap;
+    private int maxSize;
+    private long released;
+    private long totalWait;
+    private int maxWait;
+
+    public ReorderBuffer()
+    {
+        this.heap = new PriorityQueue<>(Comparator.comparingInt(p -> p.object.getTime()));
+    }
+    /**
+     * Parks {@code object} until the pose at its detection time arrives.
+     *
+     * @param now The tick of the latest pose.
+     */
+    public void park(TrackedObject object, int now)
+    {
+        heap.add(new Parked(object, now));
+        maxSize = Math.max(maxSize, heap.size());
+    }
+    /**
+     * @param now The tick of the pose that arrived.
+     * @return The objects detected at or before {@code now}, ordered by
+     *         detection time. Empty if there are none.
+     */
+    public List<TrackedObject> release(int now)
+    {
+        List<TrackedObject> due = new ArrayList<>();
+        while (!heap.isEmpty() && heap.peek().object.getTime() <= now)
+        {
+            Parked parked = heap.poll();
+            int wait = Math.max(0, now - parked.since);
+            totalWait += wait;
+            maxWait = Math.max(maxWait, wait);
+            due.add(parked.object);
+        }
+        released += due.size();
+        return due;
+    }
+    /**
+     * @return The number of objects parked now.
+     */
+    public int size()
+    {
+        return heap.size();
+    }
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+    /**
+     * @return The number of objects released so far.
+     */
+    public long getReleased()
+    {
+        return released;
+    }
+    /**
+     * @return The longest an object waited, in ticks.
+     */
+    public int getMaxWait()
+    {
+        return maxWait;
+    }
+    /**
+     * @return The mean wait of the objects released so far, in ticks.
+     */
+    public double getMeanWait()
+    {
+        return released == 0 ? 0 : (double) totalWait / released;
+    }
+}
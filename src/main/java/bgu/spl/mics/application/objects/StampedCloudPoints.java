@@ -1,9 +1,39 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.List;
+
 /**
  * Represents a group of cloud points corresponding to a specific timestamp.
  * Used by the LiDAR system to store and process point cloud data for tracked objects.
  */
 public class StampedCloudPoints {
-    // TODO: Define fields and methods.
+    private final int time;
+    private final String id;
+    private final PointCloud points;
+
+    public StampedCloudPoints(int time, String id, PointCloud points)
+    {
+        this.time = time;
+        this.id = id;
+        this.points = points;
+    }
+    public int getTime()
+    {
+        return this.time;
+    }
+    public String getId()
+    {
+        return this.id;
+    }
+    public PointCloud getPoints()
+    {
+        return this.points;
+    }
+    /**
+     * @return Views of the cloud points, see {@link PointCloud#asList()}.
+     */
+    public List<CloudPoint> getCloudPoints()
+    {
+        return this.points.asList();
+    }
 }
@@ -1,10 +1,328 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Holds statistical information about the system's operation.
  * This class aggregates metrics such as the runtime of the system,
  * the number of objects detected and tracked, and the number of landmarks identified.
+ * <p>
+ * Every sensor counts into {@link Counter}s of its own, one per metric, which
+ * count per tick in {@link LongAdder}s, so updates from different threads
+ * share no lock and no cache line. A count is never stored twice: the total
+ * of a metric is the sum over the sensors and the count of a sensor is the
+ * sum over the ticks, so in a {@link Snapshot} the breakdowns always add up
+ * to the totals. Reading the counts per tick copies every counter's ticks,
+ * so {@link #totals()} reads the totals alone for periodic dumps, and only
+ * {@link #snapshot()} reads the ticks as well.
  */
 public class StatisticalFolder {
-    // TODO: Define fields and methods for statistics tracking.
+    private static class StatisticalFolderHolder {
+        private static final StatisticalFolder instance = new StatisticalFolder();
+    }
+
+    /** The metrics counted per sensor and per tick. */
+    public enum Metric {
+        DETECTED_OBJECTS, TRACKED_OBJECTS, LANDMARKS
+    }
+
+    private final AtomicInteger systemRuntime = new AtomicInteger();
+    private final Map<Metric, ConcurrentMap<String, Counter>> counters;
+
+    StatisticalFolder()
+    {
+        counters = new EnumMap<>(Metric.class);
+        for (Metric metric : Metric.values())
+            counters.put(metric, new ConcurrentHashMap<>());
+    }
+
+    public static StatisticalFolder getInstance()
+    {
+        return StatisticalFolderHolder.instance;
+    }
+    /**
+     * @return The counter of {@code metric} for {@code sensor}, to keep and
+     *         count into from then on.
+     */
+    public Counter counter(Metric metric, String sensor)
+    {
+        return counters.get(metric).computeIfAbsent(sensor, s -> new Counter());
+    }
+    /**
+     * Records that the system ran for {@code ticks} ticks, if that is longer
+     * than recorded so far.
+     */
+    public void updateSystemRuntime(int ticks)
+    {
+        systemRuntime.accumulateAndGet(ticks, Math::max);
+    }
+    public int getSystemRuntime()
+    {
+        return systemRuntime.get();
+    }
+    public int getNumDetectedObjects()
+    {
+        return (int) total(Metric.DETECTED_OBJECTS);
+    }
+    public int getNumTrackedObjects()
+    {
+        return (int) total(Metric.TRACKED_OBJECTS);
+    }
+    public int getNumLandmarks()
+    {
+        return (int) total(Metric.LANDMARKS);
+    }
+    /**
+     * Reads every counter once, with its count at each tick.
+     *
+     * @return The statistics as of the read.
+     */
+    public Snapshot snapshot()
+    {
+        Map<Metric, Map<String, Long>> totals = new EnumMap<>(Metric.class);
+        Map<Metric, Map<String, long[]>> histograms = new EnumMap<>(Metric.class);
+        for (Map.Entry<Metric, ConcurrentMap<String, Counter>> metric : counters.entrySet())
+        {
+            Map<String, Long> bySensor = new TreeMap<>();
+            Map<String, long[]> ticksBySensor = new TreeMap<>();
+            for (Map.Entry<String, Counter> sensor : metric.getValue().entrySet())
+            {
+                long[] histogram = sensor.getValue().histogram();
+                long total = 0;
+                for (long n : histogram)
+                    total += n;
+                bySensor.put(sensor.getKey(), total);
+                ticksBySensor.put(sensor.getKey(), histogram);
+            }
+            totals.put(metric.getKey(), bySensor);
+            histograms.put(metric.getKey(), ticksBySensor);
+        }
+        return new Snapshot(systemRuntime.get(), totals, histograms);
+    }
+    /**
+     * Reads the count of every counter once, without the counts at each tick.
+     * Allocates nothing per tick, so it suits checkpoints and periodic dumps.
+     *
+     * @return The statistics as of the read; its counts by tick cannot be
+     *         read.
+     */
+    public Snapshot totals()
+    {
+        Map<Metric, Map<String, Long>> totals = new EnumMap<>(Metric.class);
+        for (Map.Entry<Metric, ConcurrentMap<String, Counter>> metric : counters.entrySet())
+        {
+            Map<String, Long> bySensor = new TreeMap<>();
+            for (Map.Entry<String, Counter> sensor : metric.getValue().entrySet())
+                bySensor.put(sensor.getKey(), sensor.getValue().get());
+            totals.put(metric.getKey(), bySensor);
+        }
+        return new Snapshot(systemRuntime.get(), totals, null);
+    }
+
+    private long total(Metric metric)
+    {
+        long total = 0;
+        for (Counter counter : counters.get(metric).values())
+            total += counter.get();
+        return total;
+    }
+
+    /**
+     * Counts one metric of one sensor, per tick.
+     * <p>
+     * Ticks are grouped in chunks of adders made on first use, in a table
+     * that grows to the last chunk used, so a counter costs memory for the
+     * ticks it counted at only. Chunks are added under the counter's lock,
+     * once every {@value #CHUNK} ticks; counting into an existing chunk takes
+     * no lock. Ticks below 0 count at tick 0 and ticks past {@link #MAX_TICK}
+     * at {@link #MAX_TICK}.
+     */
+    public static final class Counter {
+        /** The last tick counted apart. */
+        public static final int MAX_TICK = (1 << 20) - 1;
+        private static final int CHUNK_BITS = 8;
+        private static final int CHUNK = 1 << CHUNK_BITS;
+        private static final int MAX_CHUNKS = (MAX_TICK + 1) >> CHUNK_BITS;
+
+        // replaced by a longer copy when a chunk past its end is needed
+        private volatile AtomicReferenceArray<AtomicReferenceArray<LongAdder>> chunks =
+                new AtomicReferenceArray<>(1);
+
+        private Counter()
+        {
+        }
+
+        /**
+         * Counts {@code n} at {@code tick}.
+         */
+        public void add(int tick, long n)
+        {
+            tick = Math.max(0, Math.min(MAX_TICK, tick));
+            int c = tick >> CHUNK_BITS;
+            AtomicReferenceArray<AtomicReferenceArray<LongAdder>> chunks = this.chunks;
+            AtomicReferenceArray<LongAdder> chunk = c < chunks.length() ? chunks.get(c) : null;
+            if (chunk == null)
+                chunk = chunk(c);
+            LongAdder adder = chunk.get(tick & (CHUNK - 1));
+            if (adder == null)
+            {
+                chunk.compareAndSet(tick & (CHUNK - 1), null, new LongAdder());
+                adder = chunk.get(tick & (CHUNK - 1));
+            }
+            adder.add(n);
+        }
+        /**
+         * @return Chunk {@code c}, made and added to the table, grown if
+         *         needed, unless some thread did so first.
+         */
+        private synchronized AtomicReferenceArray<LongAdder> chunk(int c)
+        {
+            AtomicReferenceArray<AtomicReferenceArray<LongAdder>> chunks = this.chunks;
+            if (c >= chunks.length())
+            {
+                int length = Math.min(MAX_CHUNKS, Math.max(c + 1, 2 * chunks.length()));
+                AtomicReferenceArray<AtomicReferenceArray<LongAdder>> grown = new AtomicReferenceArray<>(length);
+                for (int i = 0; i < chunks.length(); i++)
+                    grown.set(i, chunks.get(i));
+                this.chunks = chunks = grown;
+            }
+            AtomicReferenceArray<LongAdder> chunk = chunks.get(c);
+            if (chunk == null)
+            {
+                chunk = new AtomicReferenceArray<>(CHUNK);
+                chunks.set(c, chunk);
+            }
+            return chunk;
+        }
+        /**
+         * @return The count over all ticks.
+         */
+        public long get()
+        {
+            AtomicReferenceArray<AtomicReferenceArray<LongAdder>> chunks = this.chunks;
+            long total = 0;
+            for (int c = 0; c < chunks.length(); c++)
+            {
+                AtomicReferenceArray<LongAdder> chunk = chunks.get(c);
+                for (int i = 0; chunk != null && i < CHUNK; i++)
+                {
+                    LongAdder adder = chunk.get(i);
+                    if (adder != null)
+                        total += adder.sum();
+                }
+            }
+            return total;
+        }
+
+        /**
+         * @return The count at each tick, up to the last tick counted at.
+         */
+        private long[] histogram()
+        {
+            AtomicReferenceArray<AtomicReferenceArray<LongAdder>> chunks = this.chunks;
+            long[] counts = new long[0];
+            for (int c = chunks.length() - 1; c >= 0; c--)
+            {
+                AtomicReferenceArray<LongAdder> chunk = chunks.get(c);
+                if (chunk == null)
+                    continue;
+                for (int i = CHUNK - 1; i >= 0; i--)
+                {
+                    LongAdder adder = chunk.get(i);
+                    if (adder == null)
+                        continue;
+                    int tick = (c << CHUNK_BITS) + i;
+                    if (counts.length == 0)
+                        counts = new long[tick + 1];
+                    counts[tick] = adder.sum();
+                }
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * The statistics as read at one point. Totals and breakdowns are derived
+     * from the same per-sensor, per-tick counts, so they agree with each other.
+     * A snapshot read by {@link StatisticalFolder#totals()} holds no counts by
+     * tick.
+     */
+    public static final class Snapshot {
+        private final int systemRuntime;
+        private final Map<Metric, Map<String, Long>> totals;
+        // null if only the totals were read
+        private final Map<Metric, Map<String, long[]>> histograms;
+
+        private Snapshot(int systemRuntime, Map<Metric, Map<String, Long>> totals,
+                Map<Metric, Map<String, long[]>> histograms)
+        {
+            this.systemRuntime = systemRuntime;
+            this.totals = totals;
+            this.histograms = histograms;
+        }
+        public int getSystemRuntime()
+        {
+            return systemRuntime;
+        }
+        /**
+         * @return The total of {@code metric} over all sensors and ticks.
+         */
+        public long getTotal(Metric metric)
+        {
+            long total = 0;
+            for (long n : getBySensor(metric).values())
+                total += n;
+            return total;
+        }
+        /**
+         * @return The total of {@code metric} of each sensor, by sensor name.
+         */
+        public Map<String, Long> getBySensor(Metric metric)
+        {
+            return Collections.unmodifiableMap(totals.get(metric));
+        }
+        /**
+         * @return The count of {@code metric} at each tick over all sensors,
+         *         indexed by tick, up to the last tick counted at.
+         * @throws IllegalStateException if only the totals were read.
+         */
+        public long[] getByTick(Metric metric)
+        {
+            long[] byTick = new long[0];
+            for (long[] sensor : histogramsOf(metric).values())
+            {
+                if (sensor.length > byTick.length)
+                    byTick = Arrays.copyOf(byTick, sensor.length);
+                for (int tick = 0; tick < sensor.length; tick++)
+                    byTick[tick] += sensor[tick];
+            }
+            return byTick;
+        }
+        /**
+         * @return The count of {@code metric} of {@code sensor} at each tick,
+         *         indexed by tick; empty if the sensor did not count it.
+         * @throws IllegalStateException if only the totals were read.
+         */
+        public long[] getByTick(Metric metric, String sensor)
+        {
+            long[] byTick = histogramsOf(metric).get(sensor);
+            return byTick == null ? new long[0] : byTick.clone();
+        }
+
+        private Map<String, long[]> histogramsOf(Metric metric)
+        {
+            if (histograms == null)
+                throw new IllegalStateException("the snapshot holds totals only");
+            return histograms.get(metric);
+        }
+    }
 }
@@ -1,10 +1,49 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.List;
+
 /**
  * Represents an object tracked by the LiDAR.
  * This object includes information about the tracked object's ID, description, 
  * time of tracking, and coordinates in the environment.
  */
 public class TrackedObject {
-    // TODO: Define fields and methods.
+    private final String id;
+    private final int time;
+    private final String description;
+    private final PointCloud coordinates;
+
+    public TrackedObject(String id, int time, String description, PointCloud coordinates)
+    {
+        this.id = id;
+        this.time = time;
+        this.description = description;
+        this.coordinates = coordinates;
+    }
+    public String getId()
+    {
+        return this.id;
+    }
+    /**
+     * @return The time the object was detected at.
+     */
+    public int getTime()
+    {
+        return this.time;
+    }
+    public String getDescription()
+    {
+        return this.description;
+    }
+    /**
+     * @return The coordinates of the object relative to the robot.
+     */
+    public PointCloud getPoints()
+    {
+        return this.coordinates;
+    }
+    public List<CloudPoint> getCoordinates()
+    {
+        return this.coordinates.asList();
+    }
 }
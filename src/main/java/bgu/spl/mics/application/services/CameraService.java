@@ -6,8 +6,9 @@ import bgu.spl.mics.application.messages.TickBroadcast;
 import bgu.spl.mics.application.objects.Camera;
 import bgu.spl.mics.application.objects.DetectedObject;
 import bgu.spl.mics.application.objects.STATUS;
+import bgu.spl.mics.application.objects.StampedDetectedObjects;
+import bgu.spl.mics.application.objects.StatisticalFolder;
 
-import java.util.List;
 import bgu.spl.mics.MicroService;
 
 /**
@@ -20,6 +21,8 @@ import bgu.spl.mics.MicroService;
 public class CameraService extends MicroService {
     private final Camera cam;
     private int time;
+    private int sentUntil;
+    private final StatisticalFolder.Counter detected;
     /**
      * Constructor for CameraService.
      *
@@ -29,6 +32,8 @@ public class CameraService extends MicroService {
     {
         super("Camera" + camera.getId());
         this.cam = camera;
+        this.sentUntil = Integer.MIN_VALUE;
+        this.detected = StatisticalFolder.getInstance().counter(StatisticalFolder.Metric.DETECTED_OBJECTS, getName());
     }
 
     /**
@@ -46,14 +51,18 @@ public class CameraService extends MicroService {
                 terminate();
                 return;
             }
-            List<DetectedObject> lst = cam.getObjects(time + cam.getFreq());
-            if(lst != null)
+            // detections are sent frequency ticks after they were made; everything
+            // due since the last tick handled, in case ticks were coalesced
+            int due = time - cam.getFreq();
+            for (StampedDetectedObjects stamp : cam.getObjects(sentUntil + 1, due))
             {
-                for(DetectedObject obj : lst)
+                for(DetectedObject obj : stamp.getObjects())
                 {
-                    sendEvent(new DetectObjectsEvent(obj));
+                    sendEvent(new DetectObjectsEvent(obj, stamp.getTime()));
                 }
+                detected.add(time, stamp.getObjects().size());
             }
+            sentUntil = Math.max(sentUntil, due);
         }); 
         subscribeBroadcast(TerminatedBroadcast.class, term -> {
             this.terminate();
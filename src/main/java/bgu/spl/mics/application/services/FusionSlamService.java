@@ -1,5 +1,17 @@
 package bgu.spl.mics.application.services;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+import bgu.spl.mics.application.messages.CrashedBroadcast;
+import bgu.spl.mics.application.messages.PoseEvent;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.TrackedObjectsEvent;
 import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.LandMark;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.ReorderBuffer;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+import bgu.spl.mics.application.objects.TrackedObject;
 
 import bgu.spl.mics.MicroService;
 
@@ -9,16 +21,34 @@ import bgu.spl.mics.MicroService;
  * 
  * This service receives TrackedObjectsEvents from LiDAR workers and PoseEvents from the PoseService,
  * transforming and updating the map with new landmarks.
+ * <p>
+ * A tracked object detected after the latest pose is parked in a
+ * {@link ReorderBuffer} and placed, together with every other object due,
+ * once the pose at its detection time arrives.
+ * <p>
+ * With {@link #checkpointEvery(int, ObjIntConsumer)}, the landmarks found or
+ * refined are handed out every given number of ticks, and once more when the
+ * service terminates, so they can be saved while the run goes on.
  */
 public class FusionSlamService extends MicroService {
+    private final FusionSlam fusionSlam;
+    private final ReorderBuffer waiting;
+    // the time of the latest pose
+    private int poseTime;
+    private final StatisticalFolder.Counter landmarks;
+    private ObjIntConsumer<List<LandMark>> checkpoint;
+    private int checkpointInterval;
+    private int nextCheckpoint;
     /**
      * Constructor for FusionSlamService.
      *
      * @param fusionSlam The FusionSLAM object responsible for managing the global map.
      */
     public FusionSlamService(FusionSlam fusionSlam) {
-        super("Change_This_Name");
-        // TODO Implement this
+        super("FusionSlam");
+        this.fusionSlam = fusionSlam;
+        this.waiting = new ReorderBuffer();
+        this.landmarks = StatisticalFolder.getInstance().counter(StatisticalFolder.Metric.LANDMARKS, getName());
     }
 
     /**
@@ -28,6 +58,79 @@ public class FusionSlamService extends MicroService {
      */
     @Override
     protected void initialize() {
-        // TODO Implement this
+        subscribeEvent(TrackedObjectsEvent.class, e -> {
+            for (TrackedObject object : e.getObjects())
+            {
+                if (object.getTime() > poseTime)
+                    waiting.park(object, poseTime);
+                else
+                    place(object);
+            }
+            complete(e, true);
+        });
+        subscribeEvent(PoseEvent.class, e -> {
+            Pose pose = e.getPose();
+            fusionSlam.addPose(pose);
+            if (pose.getTime() > poseTime)
+            {
+                poseTime = pose.getTime();
+                for (TrackedObject object : waiting.release(poseTime))
+                    place(object);
+                if (checkpoint != null && poseTime >= nextCheckpoint)
+                    checkpoint();
+            }
+            complete(e, true);
+        });
+        subscribeBroadcast(TerminatedBroadcast.class, term -> {
+            if (checkpoint != null)
+                checkpoint();
+            this.terminate();
+        });
+        subscribeBroadcast(CrashedBroadcast.class, crash ->{
+            if (checkpoint != null)
+                checkpoint();
+            this.terminate();
+        });
+    }
+
+    /**
+     * @return The buffer of tracked objects waiting for their pose, and its
+     *         metrics.
+     */
+    public ReorderBuffer getReorderBuffer()
+    {
+        return waiting;
+    }
+
+    /**
+     * Hands the landmarks found or refined to {@code checkpoint}, with the
+     * tick of the latest pose, whenever the poses reach a multiple of
+     * {@code ticks} ticks and when the service terminates. Call before the
+     * service starts.
+     *
+     * @param ticks The ticks between checkpoints, positive.
+     */
+    public void checkpointEvery(int ticks, ObjIntConsumer<List<LandMark>> checkpoint)
+    {
+        if (ticks <= 0)
+            throw new IllegalArgumentException("ticks must be positive: " + ticks);
+        this.checkpoint = checkpoint;
+        this.checkpointInterval = ticks;
+        this.nextCheckpoint = ticks;
+    }
+
+    private void checkpoint()
+    {
+        checkpoint.accept(fusionSlam.takeChangedLandmarks(), poseTime);
+        nextCheckpoint = (poseTime / checkpointInterval + 1) * checkpointInterval;
+    }
+
+    private void place(TrackedObject object)
+    {
+        boolean known = fusionSlam.getLandmark(object.getId()) != null;
+        // fails only if the pose was forgotten or precedes the first one,
+        // so the object can never be placed
+        if (fusionSlam.process(object) && !known)
+            landmarks.add(poseTime, 1);
     }
 }
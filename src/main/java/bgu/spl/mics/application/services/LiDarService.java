@@ -1,12 +1,14 @@
 package bgu.spl.mics.application.services;
+import java.util.List;
+
 import bgu.spl.mics.application.messages.CrashedBroadcast;
 import bgu.spl.mics.application.messages.DetectObjectsEvent;
 import bgu.spl.mics.application.messages.TerminatedBroadcast;
 import bgu.spl.mics.application.messages.TickBroadcast;
 import bgu.spl.mics.application.messages.TrackedObjectsEvent;
 import bgu.spl.mics.application.objects.LiDarWorkerTracker;
+import bgu.spl.mics.application.objects.StatisticalFolder;
 import bgu.spl.mics.application.objects.TrackedObject;
-import bgu.spl.mics.Callback;
 import bgu.spl.mics.MicroService;
 
 /**
@@ -20,15 +22,16 @@ import bgu.spl.mics.MicroService;
 public class LiDarService extends MicroService {
     private final LiDarWorkerTracker liDar;
     private int time;
+    private final StatisticalFolder.Counter tracked;
     /**
      * Constructor for LiDarService.
      *
      * @param LiDarWorkerTracker A LiDAR Tracker worker object that this service will use to process data.
      */
     public LiDarService(LiDarWorkerTracker LiDarWorkerTracker) {
-        liDar = LiDarWorkerTracker;
-        super("LiDar" + liDar.getId());
-        // TODO Implement this
+        super("LiDar" + LiDarWorkerTracker.getId());
+        this.liDar = LiDarWorkerTracker;
+        this.tracked = StatisticalFolder.getInstance().counter(StatisticalFolder.Metric.TRACKED_OBJECTS, getName());
     }
 
     /**
@@ -40,9 +43,12 @@ public class LiDarService extends MicroService {
     protected void initialize() {
         subscribeBroadcast(TickBroadcast.class, tick -> {
             this.time = tick.getTick();
-            if(liDar.getObject().getTime() + liDar.getFreq() == time)
-                TrackedObjectsEvent.addObject(liDar.getObject());
-                sendEvent(TrackedObjectsEvent.getInstance());
+            List<TrackedObject> due = liDar.release(time);
+            if (!due.isEmpty())
+            {
+                tracked.add(time, due.size());
+                sendEvent(new TrackedObjectsEvent(due));
+            }
         }); 
         subscribeBroadcast(TerminatedBroadcast.class, term -> {
             this.terminate();
@@ -51,7 +57,8 @@ public class LiDarService extends MicroService {
             this.terminate();
         });
         subscribeEvent(DetectObjectsEvent.class, obj -> {
-            liDar.addObject(obj);
+            liDar.track(obj.getObject(), obj.getTime());
+            complete(obj, obj.getObject());
         });
     }
 }
@@ -1,7 +1,10 @@
 package bgu.spl.mics.application.services;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
 import bgu.spl.mics.application.messages.PoseEvent;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
 import bgu.spl.mics.application.messages.TickBroadcast;
 import bgu.spl.mics.application.objects.GPSIMU;
+import bgu.spl.mics.application.objects.Pose;
 
 import bgu.spl.mics.MicroService;
 
@@ -19,7 +22,7 @@ public class PoseService extends MicroService {
      */
     public PoseService(GPSIMU gpsimu)
     {
-        super("GPSIMU" + gpsimu.getId());
+        super("PoseService");
         this.gpsimu = gpsimu;
     }
 
@@ -31,7 +34,16 @@ public class PoseService extends MicroService {
     protected void initialize() {
         subscribeBroadcast(TickBroadcast.class, tick ->{
             this.time = tick.getTick();
-            sendEvent(PoseEvent(gpsimu.getPos()));
+            gpsimu.setCurrentTick(time);
+            Pose pose = gpsimu.getPose(time);
+            if (pose != null)
+                sendEvent(new PoseEvent(pose));
+        });
+        subscribeBroadcast(TerminatedBroadcast.class, term -> {
+            this.terminate();
+        });
+        subscribeBroadcast(CrashedBroadcast.class, crash ->{
+            this.terminate();
         });
     }
 }
@@ -1,17 +1,37 @@
 package bgu.spl.mics.application.services;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
 import bgu.spl.mics.application.messages.TerminatedBroadcast;
 import bgu.spl.mics.application.messages.TickBroadcast;
+import bgu.spl.mics.application.objects.StatisticalFolder;
 
 /**
  * TimeService acts as the global timer for the system, broadcasting TickBroadcast messages
  * at regular intervals and controlling the simulation's duration.
+ * <p>
+ * Ticks are sent at a fixed rate from a scheduler thread: tick {@code n} is due
+ * {@code n * tickTime} milliseconds after the start, however long sending the
+ * previous ticks took, so the clock does not drift. The service itself stays in
+ * its event loop and terminates with the rest of the system.
+ * <p>
+ * In virtual time the tick time is ignored: the next tick is sent as soon as
+ * every subscriber has handled the previous one, so a run takes as long as
+ * the processing it requires and every service sees every tick in lockstep.
  */
 public class TimeService extends MicroService
 {
     private int tickTime;
     private int duration;
+    private final boolean coalesce;
+    private final boolean virtualTime;
+    private ScheduledExecutorService scheduler;
+    private int tick;
 
     /**
      * Constructor for TimeService.
@@ -20,10 +40,41 @@ public class TimeService extends MicroService
      * @param Duration  The total number of ticks before the service terminates.
      */
     public TimeService(int TickTime, int Duration)
+    {
+        this(TickTime, Duration, false, false);
+    }
+
+    /**
+     * Constructor for TimeService.
+     *
+     * @param TickTime  The duration of each tick in milliseconds.
+     * @param Duration  The total number of ticks before the service terminates.
+     * @param Coalesce  true if a subscriber that falls behind should receive only
+     *                  the latest TickBroadcast instead of every missed one.
+     */
+    public TimeService(int TickTime, int Duration, boolean Coalesce)
+    {
+        this(TickTime, Duration, Coalesce, false);
+    }
+
+    /**
+     * Constructor for TimeService.
+     *
+     * @param TickTime    The duration of each tick in milliseconds, ignored in
+     *                    virtual time.
+     * @param Duration    The total number of ticks before the service terminates.
+     * @param Coalesce    true if a subscriber that falls behind should receive only
+     *                    the latest TickBroadcast instead of every missed one.
+     * @param VirtualTime true to advance to the next tick as soon as every
+     *                    subscriber has handled the previous one.
+     */
+    public TimeService(int TickTime, int Duration, boolean Coalesce, boolean VirtualTime)
     {
         super("TimeService");
         this.tickTime = TickTime;
         this.duration = Duration;
+        this.coalesce = Coalesce;
+        this.virtualTime = VirtualTime;
     }
 
     /**
@@ -33,20 +84,60 @@ public class TimeService extends MicroService
     @Override
     protected void initialize() 
     {
-        for(int tick = 1; tick < duration; tick++)
+        subscribeBroadcast(TerminatedBroadcast.class, term -> {
+            stopTicking();
+            terminate();
+        });
+        subscribeBroadcast(CrashedBroadcast.class, crash -> {
+            stopTicking();
+            terminate();
+        });
+        if (coalesce)
+            coalesceBroadcasts(TickBroadcast.class);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, getName() + "-clock");
+            t.setDaemon(true);
+            return t;
+        });
+        if (virtualTime)
+        {
+            scheduler.execute(this::tick);
+            return;
+        }
+        long period = Math.max(1, tickTime);
+        scheduler.scheduleAtFixedRate(this::tick, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick()
+    {
+        tick++;
+        StatisticalFolder.getInstance().updateSystemRuntime(tick);
+        TickBroadcast broadcast = new TickBroadcast(tick);
+        if (virtualTime && tick < duration)
+            broadcast.whenAcknowledged(this::nextTick);
+        sendBroadcast(broadcast);
+        if (tick >= duration)
+        {
+            scheduler.shutdown();
+            sendBroadcast(new TerminatedBroadcast());
+        }
+    }
+
+    private void nextTick()
+    {
+        try
+        {
+            scheduler.execute(this::tick);
+        }
+        catch (RejectedExecutionException e)
         {
-            try
-            {
-                Thread.sleep(tickTime);
-                sendBroadcast(new TickBroadcast(tick));
-            } 
-            catch (Exception e) 
-            {
-                Thread.currentThread().interrupt();
-                super.terminate();
-            }
+            // the clock was stopped by a crash or termination
         }
-        sendBroadcast(new TerminatedBroadcast());
-        super.terminate();
+    }
+
+    private void stopTicking()
+    {
+        if (scheduler != null)
+            scheduler.shutdownNow();
     }
 }
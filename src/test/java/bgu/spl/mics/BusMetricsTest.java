@@ -0,0 +1,100 @@
+package bgu.spl.mics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class BusMetricsTest
+{
+    private static class PingEvent implements Event<String> {}
+    private static class StopBroadcast implements Broadcast {}
+
+    private final MessageBusImpl bus = MessageBusImpl.getInstance();
+
+    @AfterEach
+    public void disable()
+    {
+        bus.disableMetrics();
+    }
+
+    @Test
+    public void measuresSendsLatenciesAndCallbacks() throws Exception
+    {
+        BusMetrics metrics = bus.enableMetrics();
+        CountDownLatch subscribed = new CountDownLatch(1);
+        MicroService ponger = new MicroService("ponger")
+        {
+            @Override
+            protected void initialize()
+            {
+                subscribeEvent(PingEvent.class, e -> complete(e, "pong"));
+                subscribeBroadcast(StopBroadcast.class, b -> terminate());
+                subscribed.countDown();
+            }
+        };
+        Thread thread = new Thread(ponger);
+        thread.start();
+        assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++)
+            assertEquals("pong", bus.sendEvent(new PingEvent()).get(5, TimeUnit.SECONDS));
+        bus.sendBroadcast(new StopBroadcast());
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+
+        assertEquals(10L, (long) metrics.getSendCounts().get("PingEvent"));
+        assertEquals(1L, (long) metrics.getSendCounts().get("StopBroadcast"));
+        assertTrue(metrics.getSendRates().get("PingEvent") > 0);
+        BusMetrics.Latency latency = metrics.getQueueLatencies().get("PingEvent");
+        assertEquals(10, latency.getCount());
+        assertTrue(latency.getP50() <= latency.getP99() && latency.getP99() <= latency.getMax());
+        assertEquals(11, metrics.getCallbackTimes().get("ponger").getCount());
+        // the ponger may take each message before the depth is read
+        assertTrue(metrics.getMaxMailboxDepths().containsKey("ponger"));
+        assertFalse(metrics.getMailboxDepths().containsKey("ponger"));
+        assertEquals(0, metrics.getLostSamples());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(BusMetrics.OBJECT_NAME);
+        assertNotNull(server.getAttribute(name, "SendCounts"));
+        assertNotNull(server.getAttribute(name, "QueueLatencies"));
+        bus.disableMetrics();
+        assertNull(bus.getMetrics());
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void histogramBucketsBoundTheirValues()
+    {
+        long previous = -1;
+        for (int bucket = 0; bucket < 64 * LatencyHistogram.SUB_BUCKETS; bucket++)
+        {
+            long bound = LatencyHistogram.upperBound(bucket);
+            if (bound == Long.MAX_VALUE)
+                break;
+            assertTrue(bound > previous);
+            assertEquals(bucket, LatencyHistogram.bucket(bound));
+            assertEquals(bucket, LatencyHistogram.bucket(previous + 1));
+            previous = bound;
+        }
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 1000; v++)
+            histogram.record(v * 1000);
+        assertEquals(1000, histogram.count());
+        assertEquals(1_000_000, histogram.max());
+        // within the precision of a bucket
+        assertEquals(500_000, histogram.percentile(50), 500_000.0 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(500_500, histogram.mean(), 1e-9);
+    }
+}
@@ -0,0 +1,90 @@
+package bgu.spl.mics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost per message of dispatching a mix of events and broadcasts to their
+ * callbacks: the {@link DispatchTable} against the per-message
+ * {@code instanceof} check and map lookup it replaced.
+ * Kept in this package to reach the package-private {@link DispatchTable}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark
+{
+    private static final int MESSAGES = 1024;
+
+    public static class EventA implements Event<Integer> {}
+    public static class EventB implements Event<Integer> {}
+    public static class EventC implements Event<Integer> {}
+    public static class TickA implements Broadcast {}
+    public static class TickB implements Broadcast {}
+
+    private final Message[] messages = new Message[MESSAGES];
+    private final DispatchTable table = new DispatchTable();
+    private final Map<Class<? extends Message>, Callback<?>> eventMap = new ConcurrentHashMap<>();
+    private final Map<Class<? extends Message>, Callback<?>> broadcastMap = new ConcurrentHashMap<>();
+    private long handled;
+
+    @Setup
+    public void setup()
+    {
+        Callback<Message> count = m -> handled++;
+        Class<?>[] eventTypes = { EventA.class, EventB.class, EventC.class };
+        Class<?>[] broadcastTypes = { TickA.class, TickB.class };
+        for (Class<?> type : eventTypes)
+        {
+            table.put(type.asSubclass(Message.class), count);
+            eventMap.put(type.asSubclass(Message.class), count);
+        }
+        for (Class<?> type : broadcastTypes)
+        {
+            table.put(type.asSubclass(Message.class), count);
+            broadcastMap.put(type.asSubclass(Message.class), count);
+        }
+        Message[] kinds = { new EventA(), new EventB(), new EventC(), new TickA(), new TickB() };
+        for (int i = 0; i < MESSAGES; i++)
+            messages[i] = kinds[(i * 7) % kinds.length];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long dispatchTable()
+    {
+        for (Message m : messages)
+            table.dispatch(m);
+        return handled;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    @SuppressWarnings("unchecked")
+    public long mapLookup()
+    {
+        for (Message m : messages)
+        {
+            Callback<Message> callback = (Callback<Message>) (m instanceof Event ? eventMap : broadcastMap).get(m.getClass());
+            if (callback != null)
+                callback.call(m);
+        }
+        return handled;
+    }
+}
@@ -0,0 +1,178 @@
+package bgu.spl.mics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class FutureTest
+{
+    @Test
+    public void timedGetReturnsNullWhenTimeElapses()
+    {
+        Future<String> future = new Future<>();
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertNull(future.get(50, TimeUnit.MILLISECONDS)));
+        assertFalse(future.isDone());
+    }
+
+    @Test
+    public void getWaitsForResolveFromAnotherThread() throws Exception
+    {
+        Future<String> future = new Future<>();
+        Thread resolver = new Thread(() -> {
+            try
+            {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+            future.resolve("done");
+        });
+        resolver.start();
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertEquals("done", future.get()));
+        resolver.join();
+        future.resolve("again");
+        assertEquals("done", future.get(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void callbacksRunInRegistrationOrderAndAfterCompletion()
+    {
+        Future<Integer> future = new Future<>();
+        List<String> calls = new ArrayList<>();
+        future.onComplete(r -> calls.add("first " + r));
+        future.onComplete(r -> calls.add("second " + r));
+        assertTrue(calls.isEmpty());
+        future.resolve(7);
+        future.onComplete(r -> calls.add("late " + r));
+        assertEquals(3, calls.size());
+        assertEquals("first 7", calls.get(0));
+        assertEquals("second 7", calls.get(1));
+        assertEquals("late 7", calls.get(2));
+    }
+
+    @Test
+    public void thenApplyChainsAndPropagatesFailures()
+    {
+        Future<Integer> source = new Future<>();
+        Future<String> chained = source.thenApply(i -> "#" + (i + 1));
+        source.resolve(41);
+        assertEquals("#42", chained.get());
+
+        Future<Integer> failing = new Future<>();
+        Future<Integer> throwing = failing.thenApply(i -> i / 0);
+        failing.resolve(1);
+        assertTrue(throwing.isDone());
+        assertNull(throwing.get());
+        assertTrue(throwing.getFailure() instanceof ArithmeticException);
+
+        IllegalStateException cause = new IllegalStateException();
+        Future<Integer> failed = new Future<>();
+        Future<Integer> downstream = failed.thenApply(i -> i + 1);
+        failed.fail(cause);
+        assertSame(cause, downstream.getFailure());
+    }
+
+    @Test
+    public void interoperatesWithCompletableFuture() throws Exception
+    {
+        Future<String> future = new Future<>();
+        CompletableFuture<String> cf = future.toCompletableFuture();
+        assertFalse(cf.isDone());
+        future.resolve("x");
+        assertEquals("x", cf.get());
+
+        CompletableFuture<String> source = new CompletableFuture<>();
+        Future<String> follower = Future.of(source);
+        source.completeExceptionally(new IllegalArgumentException());
+        assertTrue(follower.getFailure() instanceof IllegalArgumentException);
+
+        Future<String> failed = new Future<>();
+        failed.fail(new IllegalStateException());
+        try
+        {
+            failed.toCompletableFuture().get();
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            return;
+        }
+        throw new AssertionError("expected the CompletableFuture to fail");
+    }
+
+    @Test
+    public void failingCallbackIsReportedNotThrownToTheCompleter() throws Exception
+    {
+        Future<String> future = new Future<>();
+        List<String> calls = new ArrayList<>();
+        future.onComplete(result -> {
+            throw new IllegalStateException("faulty");
+        });
+        future.onComplete(calls::add);
+        List<Throwable> reported = new ArrayList<>();
+        List<Throwable> thrown = new ArrayList<>();
+        Thread completer = new Thread(() -> {
+            try
+            {
+                future.resolve("done");
+            }
+            catch (RuntimeException e)
+            {
+                thrown.add(e);
+            }
+        });
+        completer.setUncaughtExceptionHandler((t, e) -> reported.add(e));
+        completer.start();
+        completer.join();
+        assertTrue(thrown.isEmpty());
+        assertEquals(1, reported.size());
+        assertEquals("faulty", reported.get(0).getMessage());
+        assertEquals(1, calls.size());
+        assertEquals("done", calls.get(0));
+    }
+
+    @Test
+    public void timedGetsInALoopReuseTheirWaiterNode() throws Exception
+    {
+        Future<String> future = new Future<>();
+        for (int i = 0; i < 1000; i++)
+            assertNull(future.get(1, TimeUnit.NANOSECONDS));
+        assertEquals(1, stacked(future));
+        Thread waiter = new Thread(() -> future.get());
+        waiter.start();
+        future.resolve("done");
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+    }
+
+    private static int stacked(Future<?> future) throws ReflectiveOperationException
+    {
+        Field callbacks = Future.class.getDeclaredField("callbacks");
+        callbacks.setAccessible(true);
+        Object node = callbacks.get(future);
+        int count = 0;
+        while (node != null)
+        {
+            Field next = node.getClass().getDeclaredField("next");
+            next.setAccessible(true);
+            node = next.get(node);
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,210 @@
+package bgu.spl.mics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class MailboxTest
+{
+    private static class Numbered implements Message
+    {
+        private final int producer;
+        private final int n;
+        Numbered(int producer, int n)
+        {
+            this.producer = producer;
+            this.n = n;
+        }
+    }
+    private static class Urgent implements Message {}
+    private static class Tick extends AcknowledgedBroadcast
+    {
+        private boolean acknowledged;
+        Tick()
+        {
+            whenAcknowledged(() -> acknowledged = true);
+        }
+    }
+
+    /**
+     * Delegates to another mailbox, running an action once before the first
+     * offer, as if another producer got there in between.
+     */
+    private static class Interleaved implements Mailbox
+    {
+        private final Mailbox inner;
+        private Runnable before;
+        Interleaved(Mailbox inner)
+        {
+            this.inner = inner;
+        }
+        @Override
+        public boolean offer(Message m)
+        {
+            Runnable action = before;
+            before = null;
+            if (action != null)
+                action.run();
+            return inner.offer(m);
+        }
+        @Override
+        public Message take() throws InterruptedException
+        {
+            return inner.take();
+        }
+        @Override
+        public Message poll()
+        {
+            return inner.poll();
+        }
+        @Override
+        public int size()
+        {
+            return inner.size();
+        }
+        @Override
+        public long dropped()
+        {
+            return inner.dropped();
+        }
+    }
+
+    @Test
+    public void ringRejectsWhenFull() throws Exception
+    {
+        Mailbox box = Mailbox.ring(4, Backpressure.REJECT);
+        for (int i = 0; i < 4; i++)
+            assertTrue(box.offer(new Numbered(0, i)));
+        assertFalse(box.offer(new Numbered(0, 4)));
+        assertEquals(4, box.size());
+        assertEquals(1, box.dropped());
+        assertEquals(0, ((Numbered) box.take()).n);
+    }
+
+    @Test
+    public void smallestRingDoesNotOverwrite() throws Exception
+    {
+        Mailbox box = Mailbox.ring(1, Backpressure.REJECT);
+        assertTrue(box.offer(new Numbered(0, 0)));
+        assertTrue(box.offer(new Numbered(0, 1)));
+        assertFalse(box.offer(new Numbered(0, 2)));
+        assertEquals(0, ((Numbered) box.take()).n);
+        assertEquals(1, ((Numbered) box.take()).n);
+    }
+
+    @Test
+    public void dropOldestKeepsTheNewestMessages() throws Exception
+    {
+        for (Mailbox box : new Mailbox[] { Mailbox.ring(2, Backpressure.DROP_OLDEST), Mailbox.linked(2, Backpressure.DROP_OLDEST) })
+        {
+            for (int i = 0; i < 5; i++)
+                assertTrue(box.offer(new Numbered(0, i)));
+            assertEquals(3, box.dropped());
+            assertEquals(3, ((Numbered) box.take()).n);
+            assertEquals(4, ((Numbered) box.take()).n);
+        }
+    }
+
+    @Test
+    public void urgentMessagesJumpAhead() throws Exception
+    {
+        Mailbox box = Mailbox.priority(2, Backpressure.REJECT, m -> m instanceof Urgent);
+        Message first = new Numbered(0, 0);
+        box.offer(first);
+        box.offer(new Numbered(0, 1));
+        Urgent urgent = new Urgent();
+        assertTrue(box.offer(urgent));
+        assertEquals(3, box.size());
+        assertSame(urgent, box.take());
+        assertSame(first, box.take());
+    }
+
+    @Test
+    public void blockingRingDeliversEveryMessageInProducerOrder() throws Exception
+    {
+        final int producers = 8;
+        final int perProducer = 20000;
+        Mailbox box = Mailbox.ring(64, Backpressure.BLOCK);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++)
+        {
+            final int id = p;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; i++)
+                    box.offer(new Numbered(id, i));
+            }));
+        }
+        threads.forEach(Thread::start);
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            int[] next = new int[producers];
+            for (int i = 0; i < producers * perProducer; i++)
+            {
+                Numbered m = (Numbered) box.take();
+                assertEquals(next[m.producer], m.n);
+                next[m.producer]++;
+            }
+        });
+        for (Thread t : threads)
+            t.join();
+        assertEquals(0, box.size());
+        assertEquals(0, box.dropped());
+    }
+
+    @Test
+    public void rejectedSlotIsEmptied()
+    {
+        Mailbox full = Mailbox.linked(1, Backpressure.REJECT);
+        Message filler = new Numbered(0, 0);
+        full.offer(filler);
+        Interleaved inner = new Interleaved(full);
+        CoalescingMailbox box = new CoalescingMailbox(inner);
+
+        Tick rejected = new Tick();
+        assertFalse(box.offerLatest(rejected));
+        // the caller still owns a rejected message
+        assertFalse(rejected.acknowledged);
+
+        // a second producer replaces the message while the slot is being rejected
+        Tick first = new Tick();
+        Tick second = new Tick();
+        inner.before = () -> assertTrue(box.offerLatest(second));
+        assertTrue(box.offerLatest(first));
+        assertTrue(first.acknowledged);
+        assertTrue(second.acknowledged);
+
+        assertSame(filler, box.poll());
+        Tick third = new Tick();
+        assertTrue(box.offerLatest(third));
+        assertSame(third, box.poll());
+    }
+
+    @Test
+    public void evictedSlotIsReleasedAndEmptied()
+    {
+        for (Mailbox inner : new Mailbox[] { Mailbox.ring(2, Backpressure.DROP_OLDEST), Mailbox.linked(2, Backpressure.DROP_OLDEST) })
+        {
+            CoalescingMailbox box = new CoalescingMailbox(inner);
+            Tick evicted = new Tick();
+            assertTrue(box.offerLatest(evicted));
+            Message a = new Numbered(0, 0);
+            Message b = new Numbered(0, 1);
+            assertTrue(box.offer(a));
+            assertTrue(box.offer(b));
+            assertTrue(evicted.acknowledged);
+            assertSame(a, box.poll());
+            assertSame(b, box.poll());
+
+            Tick next = new Tick();
+            assertTrue(box.offerLatest(next));
+            assertSame(next, box.poll());
+        }
+    }
+}
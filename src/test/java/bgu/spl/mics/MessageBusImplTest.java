@@ -0,0 +1,319 @@
+package bgu.spl.mics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class MessageBusImplTest
+{
+    private static class StressEvent implements Event<String> {}
+    private static class StressBroadcast implements Broadcast {}
+    private static class MarkerBroadcast implements Broadcast {}
+    private static class LoadEvent implements Event<String> {}
+    private static class TrackedEvent implements Event<Integer> {}
+    private static class OrphanEvent implements Event<String> {}
+    private static class KeyedEvent implements Event<String>
+    {
+        private final String key;
+        KeyedEvent(String key)
+        {
+            this.key = key;
+        }
+    }
+
+    private final MessageBusImpl bus = MessageBusImpl.getInstance();
+    private final List<MicroService> services = new ArrayList<>();
+
+    private MicroService newService(String name)
+    {
+        MicroService m = new MicroService(name)
+        {
+            @Override
+            protected void initialize() {}
+        };
+        services.add(m);
+        bus.register(m);
+        return m;
+    }
+
+    @AfterEach
+    public void unregisterAll()
+    {
+        for (MicroService m : services)
+            bus.unregister(m);
+        services.clear();
+    }
+
+    @Test
+    public void noSubscriptionIsLostUnderConcurrentSubscribeAndSend() throws Exception
+    {
+        final int threads = 16;
+        final int perThread = 50;
+        final List<MicroService> all = new ArrayList<>();
+        for (int i = 0; i < threads * perThread; i++)
+            all.add(newService("stress" + i));
+
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean subscribing = new AtomicBoolean(true);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+        {
+            final List<MicroService> mine = all.subList(t * perThread, (t + 1) * perThread);
+            workers.add(new Thread(() -> {
+                try
+                {
+                    start.await();
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                for (MicroService m : mine)
+                {
+                    bus.subscribeEvent(StressEvent.class, m);
+                    bus.subscribeBroadcast(StressBroadcast.class, m);
+                    bus.subscribeBroadcast(MarkerBroadcast.class, m);
+                }
+            }));
+        }
+        Thread sender = new Thread(() -> {
+            while (subscribing.get())
+            {
+                bus.sendBroadcast(new StressBroadcast());
+                bus.sendEvent(new StressEvent());
+            }
+        });
+        workers.forEach(Thread::start);
+        sender.start();
+        start.countDown();
+        for (Thread w : workers)
+            w.join();
+        subscribing.set(false);
+        sender.join();
+
+        bus.sendBroadcast(new MarkerBroadcast());
+        Set<MicroService> handled = new HashSet<>();
+        for (int i = 0; i < all.size(); i++)
+        {
+            Future<String> future = bus.sendEvent(new StressEvent());
+            assertNotNull(future);
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            for (MicroService m : all)
+            {
+                Message msg;
+                do
+                {
+                    msg = bus.awaitMessage(m);
+                }
+                while (!(msg instanceof MarkerBroadcast));
+                int events = 0;
+                while (events == 0)
+                {
+                    msg = bus.awaitMessage(m);
+                    if (msg instanceof StressEvent)
+                        events++;
+                }
+                handled.add(m);
+            }
+        });
+        assertEquals(all.size(), handled.size());
+    }
+
+    @Test
+    public void eventsAreDispatchedRoundRobin() throws Exception
+    {
+        MicroService first = newService("first");
+        MicroService second = newService("second");
+        bus.subscribeEvent(StressEvent.class, first);
+        bus.subscribeEvent(StressEvent.class, second);
+
+        StressEvent[] sent = new StressEvent[4];
+        for (int i = 0; i < sent.length; i++)
+        {
+            sent[i] = new StressEvent();
+            assertNotNull(bus.sendEvent(sent[i]));
+        }
+        Message a = bus.awaitMessage(first);
+        Message b = bus.awaitMessage(second);
+        Message c = bus.awaitMessage(first);
+        Message d = bus.awaitMessage(second);
+        if (a == sent[1])
+        {
+            assertSame(sent[0], b);
+            assertSame(sent[3], c);
+            assertSame(sent[2], d);
+        }
+        else
+        {
+            assertSame(sent[0], a);
+            assertSame(sent[1], b);
+            assertSame(sent[2], c);
+            assertSame(sent[3], d);
+        }
+    }
+
+    @Test
+    public void leastLoadedPicksTheShortestQueue() throws Exception
+    {
+        bus.setDispatchPolicy(LoadEvent.class, DispatchPolicy.leastLoaded());
+        MicroService busy = newService("busy");
+        MicroService idle = newService("idle");
+        bus.subscribeEvent(LoadEvent.class, busy);
+        bus.subscribeEvent(LoadEvent.class, idle);
+        bus.subscribeBroadcast(MarkerBroadcast.class, busy);
+        for (int i = 0; i < 3; i++)
+            bus.sendBroadcast(new MarkerBroadcast());
+
+        for (int i = 0; i < 3; i++)
+            bus.sendEvent(new LoadEvent());
+        assertEquals(3, bus.getQueueSize(busy));
+        assertEquals(3, bus.getQueueSize(idle));
+        for (int i = 0; i < 3; i++)
+            assertTrue(bus.awaitMessage(idle) instanceof LoadEvent);
+        bus.sendEvent(new LoadEvent());
+        assertEquals(3, bus.getQueueSize(busy));
+        assertEquals(1, bus.getQueueSize(idle));
+    }
+
+    @Test
+    public void stickyByKeyKeepsEqualKeysTogether() throws Exception
+    {
+        bus.setDispatchPolicy(KeyedEvent.class, DispatchPolicy.stickyByKey(KeyedEvent.class, e -> e.key));
+        List<MicroService> workers = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+        {
+            MicroService m = newService("worker" + i);
+            bus.subscribeEvent(KeyedEvent.class, m);
+            workers.add(m);
+        }
+        String[] keys = { "Wall_1", "Door_1", "Chair_Base_1", "Wall_2" };
+        for (int round = 0; round < 3; round++)
+        {
+            for (String key : keys)
+                bus.sendEvent(new KeyedEvent(key));
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            Map<String, MicroService> owner = new HashMap<>();
+            int received = 0;
+            for (MicroService m : workers)
+            {
+                while (received < keys.length * 3 && bus.getQueueSize(m) > 0)
+                {
+                    Message msg = bus.awaitMessage(m);
+                    if (!(msg instanceof KeyedEvent))
+                        continue;
+                    KeyedEvent e = (KeyedEvent) msg;
+                    MicroService previous = owner.putIfAbsent(e.key, m);
+                    assertTrue(previous == null || previous == m);
+                    received++;
+                }
+            }
+            assertEquals(keys.length * 3, received);
+        });
+    }
+
+    @Test
+    public void completedAndAbandonedFuturesAreEvicted() throws Exception
+    {
+        MicroService handler = newService("handler");
+        bus.subscribeEvent(TrackedEvent.class, handler);
+        int before = bus.getLiveFutureCount();
+
+        List<Future<Integer>> sent = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            sent.add(bus.sendEvent(new TrackedEvent()));
+        assertEquals(before + 10, bus.getLiveFutureCount());
+        for (int i = 0; i < 5; i++)
+            bus.complete((TrackedEvent) bus.awaitMessage(handler), i);
+        assertEquals(before + 5, bus.getLiveFutureCount());
+        assertEquals(Integer.valueOf(4), sent.get(4).get());
+
+        bus.unregister(handler);
+        assertEquals(before, bus.getLiveFutureCount());
+        for (int i = 5; i < 10; i++)
+        {
+            assertTrue(sent.get(i).isDone());
+            assertTrue(sent.get(i).getFailure() instanceof CancellationException);
+        }
+    }
+
+    @Test
+    public void uncompletedFuturesExpireAfterTimeToLive()
+    {
+        MicroService handler = newService("slow");
+        bus.subscribeEvent(TrackedEvent.class, handler);
+        bus.setFutureTimeToLive(20, TimeUnit.MILLISECONDS);
+        try
+        {
+            Future<Integer> future = bus.sendEvent(new TrackedEvent());
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                while (!future.isDone())
+                    Thread.sleep(5);
+            });
+            assertTrue(future.getFailure() instanceof TimeoutException);
+        }
+        finally
+        {
+            bus.setFutureTimeToLive(0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Test
+    public void awaitMessagesDrainsWaitingMessagesAtOnce() throws Exception
+    {
+        MicroService m = newService("batched");
+        bus.subscribeBroadcast(MarkerBroadcast.class, m);
+        for (int i = 0; i < 5; i++)
+            bus.sendBroadcast(new MarkerBroadcast());
+        Message[] batch = new Message[3];
+        assertEquals(3, bus.awaitMessages(m, batch));
+        assertEquals(2, bus.getQueueSize(m));
+        assertEquals(2, bus.awaitMessages(m, batch));
+        for (Message msg : batch)
+            assertTrue(msg instanceof MarkerBroadcast);
+    }
+
+    @Test
+    public void unregisteredServiceIsNotLeftSubscribed() throws Exception
+    {
+        MicroService handler = newService("handler");
+        bus.subscribeEvent(OrphanEvent.class, handler);
+        MicroService late = newService("late");
+        bus.unregister(late);
+        bus.subscribeEvent(OrphanEvent.class, late);
+        // round-robin would hand one of these to a service without a mailbox
+        assertNotNull(bus.sendEvent(new OrphanEvent()));
+        assertNotNull(bus.sendEvent(new OrphanEvent()));
+
+        for (int i = 0; i < 1000; i++)
+        {
+            MicroService m = newService("racing" + i);
+            Thread subscriber = new Thread(() -> bus.subscribeEvent(OrphanEvent.class, m));
+            subscriber.start();
+            bus.unregister(m);
+            subscriber.join();
+            assertNotNull(bus.sendEvent(new OrphanEvent()));
+            assertNotNull(bus.sendEvent(new OrphanEvent()));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package bgu.spl.mics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class ServiceExecutorTest
+{
+    private static class CountEvent implements Event<Integer> {}
+    private static class QuitEvent implements Event<Boolean> {}
+    private static class PingBroadcast implements Broadcast {}
+    private static class StopBroadcast implements Broadcast {}
+
+    @Test
+    public void pooledServicesHandleEventsAndTerminate()
+    {
+        final int services = 50;
+        final int events = 2000;
+        MessageBusImpl bus = MessageBusImpl.getInstance();
+        ServiceExecutor executor = new ServiceExecutor(ExecutionMode.POOLED, 2);
+        AtomicInteger handled = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(services);
+        for (int i = 0; i < services; i++)
+        {
+            executor.execute(new MicroService("pooled" + i)
+            {
+                @Override
+                protected void initialize()
+                {
+                    subscribeEvent(CountEvent.class, e -> complete(e, handled.incrementAndGet()));
+                    subscribeEvent(QuitEvent.class, e -> terminate());
+                    ready.countDown();
+                }
+            });
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            ready.await();
+            Future<?>[] futures = new Future<?>[events];
+            for (int i = 0; i < events; i++)
+                futures[i] = bus.sendEvent(new CountEvent());
+            for (Future<?> f : futures)
+                f.get();
+            while (bus.sendEvent(new QuitEvent()) != null)
+                Thread.yield();
+            executor.awaitTermination();
+        });
+        executor.shutdown();
+        assertEquals(events, handled.get());
+    }
+
+    @Test
+    public void broadcastCallbacksAreCalled()
+    {
+        MessageBusImpl bus = MessageBusImpl.getInstance();
+        ServiceExecutor executor = new ServiceExecutor(ExecutionMode.THREAD_PER_SERVICE, 0);
+        AtomicInteger pings = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(1);
+        executor.execute(new MicroService("listener")
+        {
+            @Override
+            protected void initialize()
+            {
+                subscribeBroadcast(PingBroadcast.class, b -> pings.incrementAndGet());
+                subscribeBroadcast(StopBroadcast.class, b -> terminate());
+                ready.countDown();
+            }
+        });
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            ready.await();
+            for (int i = 0; i < 3; i++)
+                bus.sendBroadcast(new PingBroadcast());
+            bus.sendBroadcast(new StopBroadcast());
+            executor.awaitTermination();
+        });
+        assertEquals(3, pings.get());
+    }
+
+    @Test
+    public void awaitInitializationWaitsForEverySubscription()
+    {
+        final int services = 20;
+        for (ExecutionMode mode : new ExecutionMode[] { ExecutionMode.THREAD_PER_SERVICE, ExecutionMode.POOLED })
+        {
+            MessageBusImpl bus = MessageBusImpl.getInstance();
+            ServiceExecutor executor = new ServiceExecutor(mode, 2);
+            AtomicInteger pings = new AtomicInteger();
+            for (int i = 0; i < services; i++)
+            {
+                executor.execute(new MicroService("late" + i)
+                {
+                    @Override
+                    protected void initialize()
+                    {
+                        try
+                        {
+                            Thread.sleep(5);
+                        }
+                        catch (InterruptedException e)
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                        subscribeBroadcast(PingBroadcast.class, b -> pings.incrementAndGet());
+                        subscribeBroadcast(StopBroadcast.class, b -> terminate());
+                    }
+                });
+            }
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                executor.awaitInitialization();
+                bus.sendBroadcast(new PingBroadcast());
+                bus.sendBroadcast(new StopBroadcast());
+                executor.awaitTermination();
+            });
+            executor.shutdown();
+            assertEquals(services, pings.get());
+        }
+    }
+
+    @Test
+    public void failingInitializeIsReportedAndTerminates() throws InterruptedException
+    {
+        MicroService service = new MicroService("faulty")
+        {
+            @Override
+            protected void initialize()
+            {
+                throw new IllegalStateException("faulty");
+            }
+        };
+        List<Throwable> reported = new ArrayList<>();
+        Thread thread = new Thread(service);
+        thread.setUncaughtExceptionHandler((t, e) -> reported.add(e));
+        thread.start();
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+        assertEquals(1, reported.size());
+        assertEquals("faulty", reported.get(0).getMessage());
+    }
+
+    @Test
+    public void failingCallbackIsReportedAndTerminates() throws InterruptedException
+    {
+        CountDownLatch ready = new CountDownLatch(1);
+        MicroService service = new MicroService("faultyCallback")
+        {
+            @Override
+            protected void initialize()
+            {
+                subscribeBroadcast(PingBroadcast.class, b -> {
+                    throw new IllegalStateException("faulty");
+                });
+                ready.countDown();
+            }
+        };
+        List<Throwable> reported = new ArrayList<>();
+        Thread thread = new Thread(service);
+        thread.setUncaughtExceptionHandler((t, e) -> reported.add(e));
+        thread.start();
+        ready.await();
+        MessageBusImpl.getInstance().sendBroadcast(new PingBroadcast());
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+        assertEquals(1, reported.size());
+        assertEquals("faulty", reported.get(0).getMessage());
+    }
+}
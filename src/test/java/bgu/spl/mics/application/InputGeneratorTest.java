@@ -0,0 +1,81 @@
+package bgu.spl.mics.application;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import bgu.spl.mics.application.objects.DetectedObject;
+import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.PointCloud;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.StampedCloudPoints;
+import bgu.spl.mics.application.objects.StampedDetectedObjects;
+
+public class InputGeneratorTest
+{
+    @Test
+    public void everyDetectionMapsBackToTheSameObject(@TempDir Path dir) throws Exception
+    {
+        Path file = new InputGenerator(3, 2, 40, 2, 5).write(dir);
+        Configuration config = Configuration.load(file.toString());
+        SensorInputs inputs = SensorInputs.fromJson(config);
+        assertEquals(3, config.getCameras().size());
+        assertEquals(2, config.getLidars().size());
+        List<Pose> poses = inputs.getPoses();
+        assertEquals(40, poses.size());
+
+        Map<String, double[][]> seen = new HashMap<>();
+        for (Configuration.CameraConfiguration camera : config.getCameras())
+        {
+            List<StampedDetectedObjects> stamps = inputs.getCameraData(camera.getCameraKey());
+            assertEquals(40, stamps.size());
+            for (StampedDetectedObjects stamp : stamps)
+            {
+                assertEquals(2, stamp.getObjects().size());
+                Pose pose = poses.get(stamp.getTime() - 1);
+                assertEquals(stamp.getTime(), pose.getTime());
+                for (DetectedObject object : stamp.getObjects())
+                {
+                    StampedCloudPoints points = inputs.getLidar().getCloudPoints(stamp.getTime(), object.getId());
+                    assertNotNull(points);
+                    double[][] global = toGlobal(pose, points.getPoints());
+                    double[][] first = seen.putIfAbsent(object.getId(), global);
+                    for (int i = 0; first != null && i < 5; i++)
+                    {
+                        assertEquals(first[0][i], global[0][i], 1e-9);
+                        assertEquals(first[1][i], global[1][i], 1e-9);
+                    }
+                }
+            }
+        }
+        // every camera moves on every 8 ticks: 5 frames of 3 cameras and 2 objects, out of 24
+        assertEquals(24, seen.size());
+    }
+
+    @Test
+    public void sameCountsGenerateTheSameFiles(@TempDir Path dir) throws Exception
+    {
+        new InputGenerator(2, 1, 20, 3, 4).write(dir.resolve("a"));
+        new InputGenerator(2, 1, 20, 3, 4).write(dir.resolve("b"));
+        for (String name : new String[] { "configuration_file.json", "camera_data.json", "lidar_data.json", "pose_data.json" })
+            assertEquals(new String(Files.readAllBytes(dir.resolve("a").resolve(name))),
+                    new String(Files.readAllBytes(dir.resolve("b").resolve(name))), name);
+    }
+
+    private static double[][] toGlobal(Pose pose, PointCloud points)
+    {
+        double[] x = new double[points.size()];
+        double[] y = new double[points.size()];
+        points.copyXY(x, y);
+        FusionSlam.toGlobal(pose, x, y, x.length, x, y);
+        return new double[][] { x, y };
+    }
+}
@@ -0,0 +1,129 @@
+package bgu.spl.mics.application;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import bgu.spl.mics.application.objects.LandMark;
+import bgu.spl.mics.application.objects.PointCloud;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+
+public class OutputWriterTest
+{
+    private static LandMark landmark(String id, double... xy)
+    {
+        PointCloud.Builder points = new PointCloud.Builder(PointCloud.Precision.DOUBLE, xy.length / 2);
+        for (int i = 0; i < xy.length; i += 2)
+            points.add(xy[i], xy[i + 1], 0);
+        return new LandMark(id, "Wall", points.build());
+    }
+
+    @Test
+    public void writesWhatGsonWouldForTheSameMap(@TempDir Path dir) throws Exception
+    {
+        List<LandMark> landmarks = Arrays.asList(landmark("Wall_1", 0.1, -2.5, 3.0 / 7, 1e-7),
+                landmark("Door_1", 12345.678, 0));
+        StatisticalFolder.Snapshot stats = StatisticalFolder.getInstance().snapshot();
+        Path path = dir.resolve("output_file.json");
+        OutputWriter.write(path, stats, landmarks, null);
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("systemRuntime", stats.getSystemRuntime());
+        expected.put("numDetectedObjects", stats.getTotal(StatisticalFolder.Metric.DETECTED_OBJECTS));
+        expected.put("numTrackedObjects", stats.getTotal(StatisticalFolder.Metric.TRACKED_OBJECTS));
+        expected.put("numLandmarks", stats.getTotal(StatisticalFolder.Metric.LANDMARKS));
+        Map<String, Object> byId = new LinkedHashMap<>();
+        for (LandMark landmark : landmarks)
+        {
+            List<Map<String, Double>> coordinates = new ArrayList<>();
+            for (int i = 0; i < landmark.getPoints().size(); i++)
+            {
+                Map<String, Double> coordinate = new LinkedHashMap<>();
+                coordinate.put("x", landmark.getPoints().getX(i));
+                coordinate.put("y", landmark.getPoints().getY(i));
+                coordinates.add(coordinate);
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", landmark.getId());
+            entry.put("description", landmark.getDescription());
+            entry.put("coordinates", coordinates);
+            byId.put(landmark.getId(), entry);
+        }
+        expected.put("landMarks", byId);
+
+        assertEquals(new GsonBuilder().setPrettyPrinting().create().toJson(expected),
+                new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(dir.resolve("output_file.json.tmp")));
+    }
+
+    @Test
+    public void writingKeepsNoCopyOfTheLandmarks(@TempDir Path dir) throws Exception
+    {
+        LandMark landmark = landmark("Wall_1", 1, 2, 3, 4);
+        StatisticalFolder.Snapshot stats = StatisticalFolder.getInstance().snapshot();
+        OutputWriter.write(dir.resolve("output_file.json"), stats, Arrays.asList(landmark), null);
+        try (OutputWriter.Checkpoint checkpoint = new OutputWriter.Checkpoint(dir.resolve("checkpoint.jsonl")))
+        {
+            checkpoint.append(1, stats, Arrays.asList(landmark));
+        }
+        Field points = LandMark.class.getDeclaredField("points");
+        points.setAccessible(true);
+        assertNull(points.get(landmark));
+    }
+
+    @Test
+    public void failedWriteKeepsTheOldFileAndLeavesNoTemporary(@TempDir Path dir) throws Exception
+    {
+        Path path = dir.resolve("output_file.json");
+        Files.write(path, "old".getBytes(StandardCharsets.UTF_8));
+        // a landmark without an id cannot be written as a key
+        List<LandMark> landmarks = Arrays.asList(landmark("Wall_1", 1, 1), landmark(null, 2, 2));
+        assertThrows(NullPointerException.class,
+                () -> OutputWriter.write(path, StatisticalFolder.getInstance().snapshot(), landmarks, null));
+        assertEquals("old", new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(dir.resolve("output_file.json.tmp")));
+    }
+
+    @Test
+    public void checkpointAppendsOneRecordPerLine(@TempDir Path dir) throws Exception
+    {
+        Path path = dir.resolve("checkpoint.jsonl");
+        StatisticalFolder.Snapshot stats = StatisticalFolder.getInstance().snapshot();
+        try (OutputWriter.Checkpoint checkpoint = new OutputWriter.Checkpoint(path))
+        {
+            checkpoint.append(10, stats, Arrays.asList(landmark("Wall_1", 1, 2), landmark("Wall_2", 3, 4)));
+            checkpoint.append(20, stats, Arrays.asList(landmark("Wall_1", 5, 6)));
+            // records are on the disk before the journal is closed
+            assertEquals(2, Files.readAllLines(path, StandardCharsets.UTF_8).size());
+        }
+
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        JsonObject first = JsonParser.parseString(lines.get(0)).getAsJsonObject();
+        JsonObject second = JsonParser.parseString(lines.get(1)).getAsJsonObject();
+        assertEquals(10, first.get("tick").getAsInt());
+        assertEquals(2, first.getAsJsonArray("landMarks").size());
+        assertEquals(20, second.get("tick").getAsInt());
+        JsonObject refined = second.getAsJsonArray("landMarks").get(0).getAsJsonObject();
+        assertEquals("Wall_1", refined.get("id").getAsString());
+        assertEquals(5, refined.getAsJsonArray("coordinates").get(0).getAsJsonObject().get("x").getAsDouble());
+    }
+}
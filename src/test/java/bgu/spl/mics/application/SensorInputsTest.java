@@ -0,0 +1,76 @@
+package bgu.spl.mics.application;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.JsonParseException;
+
+import bgu.spl.mics.application.objects.StampedDetectedObjects;
+
+public class SensorInputsTest
+{
+    private static Configuration write(Path dir, String cameras) throws Exception
+    {
+        String config = "{\"Cameras\":{\"CamerasConfigurations\":["
+                + "{\"id\":1,\"frequency\":1,\"camera_key\":\"camera1\"},"
+                + "{\"id\":2,\"frequency\":1,\"camera_key\":\"came\\\"ra2\"},"
+                + "{\"id\":3,\"frequency\":1,\"camera_key\":\"camera3\"}],"
+                + "\"camera_datas_path\":\"camera_data.json\"},"
+                + "\"Lidars\":{\"LidarConfigurations\":[],\"lidars_data_path\":\"lidar_data.json\"},"
+                + "\"poseJsonFile\":\"pose_data.json\",\"TickTime\":1,\"Duration\":5}";
+        Files.write(dir.resolve("configuration_file.json"), config.getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("camera_data.json"), cameras.getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("lidar_data.json"), "[]".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("pose_data.json"), "[]".getBytes(StandardCharsets.UTF_8));
+        return Configuration.load(dir.resolve("configuration_file.json").toString());
+    }
+
+    @Test
+    public void eachCameraParsesOnlyItsOwnRecording(@TempDir Path dir) throws Exception
+    {
+        // names and strings that look like structure, a repeated key and a nested array
+        String cameras = "{ \"other\" : [ {\"time\":9,\"detectedObjects\":[{\"id\":\"}],{\\\"\",\"description\":\"[\"}]} ],\n"
+                + "\t\"camera1\":[[{\"time\":1,\"detectedObjects\":[{\"id\":\"A\",\"description\":\"Wall\"}]}]],"
+                + "\"came\\\"ra2\" :[{\"time\":2,\"detectedObjects\":[{\"id\":\"B\"}]}],"
+                + "\"camera1\":[{\"time\":3,\"detectedObjects\":[]}]}";
+        Configuration config = write(dir, cameras);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            SensorInputs inputs = SensorInputs.fromJson(config, config.getCloudPointPrecision(), executor);
+            List<StampedDetectedObjects> camera1 = inputs.getCameraData("camera1");
+            assertEquals(2, camera1.size());
+            assertEquals(1, camera1.get(0).getTime());
+            assertEquals("A", camera1.get(0).getObjects().get(0).getId());
+            assertEquals(3, camera1.get(1).getTime());
+            List<StampedDetectedObjects> camera2 = inputs.getCameraData("came\"ra2");
+            assertEquals(1, camera2.size());
+            assertEquals("B", camera2.get(0).getObjects().get(0).getId());
+            assertNull(camera2.get(0).getObjects().get(0).getDescription());
+            assertTrue(inputs.getCameraData("camera3").isEmpty());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void cameraDataMustBeAnObject(@TempDir Path dir) throws Exception
+    {
+        Configuration config = write(dir, "[{\"camera1\":[]}]");
+        assertThrows(JsonParseException.class, () -> SensorInputs.fromJson(config));
+    }
+}
@@ -0,0 +1,135 @@
+package bgu.spl.mics.application;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import bgu.spl.mics.application.objects.DetectedObject;
+import bgu.spl.mics.application.objects.LiDarDataBase;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.StampedCloudPoints;
+import bgu.spl.mics.application.objects.StampedDetectedObjects;
+
+public class SnapshotTest
+{
+    private static Configuration copyExample(Path dir) throws Exception
+    {
+        for (String name : new String[] { "configuration_file.json", "camera_data.json", "lidar_data.json", "pose_data.json" })
+            Files.copy(Paths.get("example_input_2", name), dir.resolve(name));
+        return Configuration.load(dir.resolve("configuration_file.json").toString());
+    }
+
+    @Test
+    public void snapshotLoadsTheSameDataAsJson(@TempDir Path dir) throws Exception
+    {
+        Configuration config = copyExample(dir);
+        assertNull(Snapshot.read(config));
+        Snapshot.write(config);
+        SensorInputs json = SensorInputs.fromJson(config);
+        SensorInputs snapshot = Snapshot.read(config);
+        assertNotNull(snapshot);
+
+        assertEquals(json.getCameraData().keySet(), snapshot.getCameraData().keySet());
+        for (Map.Entry<String, List<StampedDetectedObjects>> camera : json.getCameraData().entrySet())
+        {
+            List<StampedDetectedObjects> expected = camera.getValue();
+            List<StampedDetectedObjects> actual = snapshot.getCameraData(camera.getKey());
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++)
+            {
+                assertEquals(expected.get(i).getTime(), actual.get(i).getTime());
+                assertEquals(expected.get(i).getObjects().size(), actual.get(i).getObjects().size());
+                for (int j = 0; j < expected.get(i).getObjects().size(); j++)
+                {
+                    DetectedObject e = expected.get(i).getObjects().get(j);
+                    DetectedObject a = actual.get(i).getObjects().get(j);
+                    assertEquals(e.getId(), a.getId());
+                    assertEquals(e.getDescription(), a.getDescription());
+                }
+            }
+        }
+
+        assertEquals(json.getPoses().size(), snapshot.getPoses().size());
+        for (int i = 0; i < json.getPoses().size(); i++)
+        {
+            Pose e = json.getPoses().get(i);
+            Pose a = snapshot.getPoses().get(i);
+            assertEquals(e.getTime(), a.getTime());
+            assertEquals(e.getX(), a.getX(), 0);
+            assertEquals(e.getY(), a.getY(), 0);
+            assertEquals(e.getYaw(), a.getYaw(), 0);
+        }
+
+        LiDarDataBase lidar = snapshot.getLidar();
+        assertEquals(json.getLidar().size(), lidar.size());
+        assertEquals(json.getLidar().getLastTime(), lidar.getLastTime());
+        json.getLidar().forEach(e -> {
+            StampedCloudPoints a = lidar.getCloudPoints(e.getTime(), e.getId());
+            assertEquals(e.getPoints().size(), a.getPoints().size());
+            for (int i = 0; i < e.getPoints().size(); i++)
+            {
+                assertEquals(e.getPoints().getX(i), a.getPoints().getX(i), 0);
+                assertEquals(e.getPoints().getY(i), a.getPoints().getY(i), 0);
+                assertEquals(e.getPoints().getZ(i), a.getPoints().getZ(i), 0);
+            }
+        });
+    }
+
+    @Test
+    public void staleSnapshotFallsBackToJson(@TempDir Path dir) throws Exception
+    {
+        Configuration config = copyExample(dir);
+        Snapshot.write(config);
+        Path poses = dir.resolve("pose_data.json");
+        Files.write(poses, "[{\"time\": 1, \"x\": 1.5, \"y\": 2.5, \"yaw\": 90}]".getBytes("UTF-8"));
+        Files.setLastModifiedTime(poses, FileTime.fromMillis(Files.getLastModifiedTime(poses).toMillis() + 1000));
+        assertNull(Snapshot.read(config));
+        SensorInputs inputs = SensorInputs.load(config);
+        assertEquals(1, inputs.getPoses().size());
+        assertEquals(2.5f, inputs.getPoses().get(0).getY(), 0);
+
+        Files.write(dir.resolve("configuration_file.json.snapshot"), new byte[] { 1, 2, 3 });
+        assertEquals(1, SensorInputs.load(config).getPoses().size());
+    }
+
+    @Test
+    public void snapshotKeepsEveryStampOfARepeatedTimeAndId(@TempDir Path dir) throws Exception
+    {
+        Configuration config = copyExample(dir);
+        String lidar = "[{\"time\":1,\"id\":\"A\",\"cloudPoints\":[[1,1,0]]},"
+                + "{\"time\":1,\"id\":\"A\",\"cloudPoints\":[[2,2,0]]},"
+                + "{\"time\":2,\"id\":\"B\",\"cloudPoints\":[[3,3,0]]}]";
+        Files.write(dir.resolve("lidar_data.json"), lidar.getBytes("UTF-8"));
+        Snapshot.write(config);
+        LiDarDataBase db = Snapshot.read(config).getLidar();
+        assertEquals(3, db.size());
+        assertEquals(2, db.getCloudPoints(1, "A").getPoints().getX(0), 0);
+        assertEquals(3, db.getCloudPoints(2, "B").getPoints().getX(0), 0);
+    }
+
+    @Test
+    public void snapshotKeepsMissingIdsAndDescriptions(@TempDir Path dir) throws Exception
+    {
+        Configuration config = copyExample(dir);
+        String cameras = "{\"camera1\":[[{\"time\":1,\"detectedObjects\":"
+                + "[{\"description\":\"Wall\"},{\"id\":\"Door\"}]}]]}";
+        Files.write(dir.resolve("camera_data.json"), cameras.getBytes("UTF-8"));
+        Snapshot.write(config);
+        SensorInputs snapshot = Snapshot.read(config);
+        List<DetectedObject> objects = snapshot.getCameraData("camera1").get(0).getObjects();
+        assertNull(objects.get(0).getId());
+        assertEquals("Wall", objects.get(0).getDescription());
+        assertEquals("Door", objects.get(1).getId());
+        assertNull(objects.get(1).getDescription());
+    }
+}
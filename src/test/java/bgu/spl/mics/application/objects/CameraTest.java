@@ -0,0 +1,57 @@
+package bgu.spl.mics.application.objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CameraTest
+{
+    private static List<StampedDetectedObjects> recording(int... times)
+    {
+        List<StampedDetectedObjects> data = new ArrayList<>();
+        for (int time : times)
+        {
+            StampedDetectedObjects stamp = new StampedDetectedObjects(time);
+            stamp.addObject(new DetectedObject("Wall_" + time, "Wall"));
+            data.add(stamp);
+        }
+        return data;
+    }
+
+    @Test
+    public void looksUpDenseAndSparseRecordings()
+    {
+        Camera dense = new Camera(1, 0, recording(4, 2, 3, 6));
+        Camera sparse = new Camera(2, 0, recording(1000000, 2, 500));
+        assertEquals("Wall_3", dense.getObjects(3).get(0).getId());
+        assertNull(dense.getObjects(5));
+        assertNull(dense.getObjects(1));
+        assertNull(dense.getObjects(7));
+        assertEquals("Wall_500", sparse.getObjects(500).get(0).getId());
+        assertNull(sparse.getObjects(501));
+        assertEquals("Wall_1000000", sparse.getObjects(1000000).get(0).getId());
+    }
+
+    @Test
+    public void rangeQueryReturnsEveryDetectionInOrder()
+    {
+        List<StampedDetectedObjects> data = recording(8, 2, 5, 5, 11);
+        Camera camera = new Camera(1, 0, data);
+        List<StampedDetectedObjects> range = camera.getObjects(3, 8);
+        assertEquals(3, range.size());
+        assertSame(data.get(2), range.get(0));
+        assertSame(data.get(3), range.get(1));
+        assertSame(data.get(0), range.get(2));
+        assertSame(data.get(3).getObjects(), camera.getObjects(5));
+        assertTrue(camera.getObjects(12, 20).isEmpty());
+        assertTrue(camera.getObjects(8, 3).isEmpty());
+        assertEquals(5, camera.getObjects(Integer.MIN_VALUE, Integer.MAX_VALUE).size());
+        assertTrue(new Camera(2, 0, recording()).getObjects(0, 10).isEmpty());
+    }
+}
@@ -0,0 +1,63 @@
+package bgu.spl.mics.application.objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class FusionSlamTest
+{
+    @Test
+    public void transformsPointsInPlace()
+    {
+        double[] x = { 1, 0, 2 };
+        double[] y = { 0, 1, 2 };
+        FusionSlam.toGlobal(new Pose(1, 10, 20, 90), x, y, 2, x, y);
+        assertEquals(10, x[0], 1e-12);
+        assertEquals(21, y[0], 1e-12);
+        assertEquals(9, x[1], 1e-12);
+        assertEquals(20, y[1], 1e-12);
+        // past count
+        assertEquals(2, x[2], 0);
+        assertEquals(2, y[2], 0);
+    }
+
+    @Test
+    public void placesAndRefinesObjects()
+    {
+        FusionSlam slam = new FusionSlam();
+        PointCloud.Builder points = new PointCloud.Builder(PointCloud.Precision.FLOAT, 2);
+        points.add(1, 0, 0).add(2, 0, 0);
+        TrackedObject object = new TrackedObject("Wall", 1, "Wall", points.build());
+        assertFalse(slam.process(object));
+        slam.addPose(new Pose(1, 0, 0, 0));
+        slam.addPose(new Pose(2, 0, 2, 0));
+        assertTrue(slam.process(object));
+        assertTrue(slam.process(new TrackedObject("Wall", 2, "Wall", PointCloud.of(1, 0, 0))));
+        LandMark wall = slam.getLandmark("Wall");
+        assertEquals(2, wall.getObservations());
+        assertEquals(2, wall.getPoints().size());
+        assertEquals(1, wall.getPoints().getX(0), 0);
+        assertEquals(1, wall.getPoints().getY(0), 0);
+        assertEquals(2, wall.getPoints().getX(1), 0);
+        assertEquals(0, wall.getPoints().getY(1), 0);
+        assertEquals(wall, slam.getNearestLandmark(0, 0));
+    }
+
+    @Test
+    public void handsOutChangedLandmarksOnce()
+    {
+        FusionSlam slam = new FusionSlam();
+        slam.addPose(new Pose(1, 0, 0, 0));
+        slam.process(new TrackedObject("Wall", 1, "Wall", PointCloud.of(1, 0, 0)));
+        slam.process(new TrackedObject("Door", 1, "Door", PointCloud.of(2, 0, 0)));
+        slam.process(new TrackedObject("Wall", 1, "Wall", PointCloud.of(3, 0, 0)));
+        assertEquals(Arrays.asList(slam.getLandmark("Wall"), slam.getLandmark("Door")), slam.takeChangedLandmarks());
+        assertTrue(slam.takeChangedLandmarks().isEmpty());
+        slam.process(new TrackedObject("Door", 1, "Door", PointCloud.of(4, 0, 0)));
+        assertEquals(Arrays.asList(slam.getLandmark("Door")), slam.takeChangedLandmarks());
+    }
+}
@@ -0,0 +1,87 @@
+package bgu.spl.mics.application.objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LandMarkTest
+{
+    /**
+     * Averages point lists the way landmarks were refined before they were
+     * updated in place.
+     */
+    private static List<CloudPoint> average(List<CloudPoint> a, List<CloudPoint> b)
+    {
+        List<CloudPoint> average = new ArrayList<>();
+        for (int i = 0; i < Math.max(a.size(), b.size()); i++)
+        {
+            if (i >= a.size())
+                average.add(new CloudPoint(b.get(i).getX(), b.get(i).getY(), 0));
+            else if (i >= b.size())
+                average.add(new CloudPoint(a.get(i).getX(), a.get(i).getY(), 0));
+            else
+                average.add(new CloudPoint((a.get(i).getX() + b.get(i).getX()) / 2,
+                        (a.get(i).getY() + b.get(i).getY()) / 2, 0));
+        }
+        return average;
+    }
+
+    private static PointCloud observation(Random random)
+    {
+        int n = random.nextInt(12);
+        PointCloud.Builder points = new PointCloud.Builder(PointCloud.Precision.DOUBLE, n);
+        for (int i = 0; i < n; i++)
+            points.add(random.nextGaussian() * 1000, random.nextGaussian() * 1000, 0);
+        return points.build();
+    }
+
+    private static void refine(LandMark landmark, PointCloud observation)
+    {
+        double[] x = new double[observation.size()];
+        double[] y = new double[observation.size()];
+        observation.copyXY(x, y);
+        landmark.refine(x, y, observation.size());
+    }
+
+    @Test
+    public void refiningMatchesTheNaiveAverageExactly()
+    {
+        Random random = new Random(17);
+        for (int trial = 0; trial < 200; trial++)
+        {
+            PointCloud first = observation(random);
+            LandMark landmark = new LandMark("L", "landmark", first);
+            List<CloudPoint> expected = new ArrayList<>(first.asList());
+            int observations = 1 + random.nextInt(20);
+            for (int o = 1; o < observations; o++)
+            {
+                PointCloud next = observation(random);
+                refine(landmark, next);
+                expected = average(expected, next.asList());
+            }
+            assertEquals(observations, landmark.getObservations());
+            List<CloudPoint> actual = landmark.getCoordinates();
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++)
+            {
+                assertEquals(expected.get(i).getX(), actual.get(i).getX(), 0);
+                assertEquals(expected.get(i).getY(), actual.get(i).getY(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void pointsAreACopyOfTheLastRefinement()
+    {
+        LandMark landmark = new LandMark("L", "landmark", PointCloud.of(2, 4, 0));
+        PointCloud before = landmark.getPoints();
+        refine(landmark, PointCloud.of(4, 8, 0));
+        assertEquals(2, before.getX(0), 0);
+        assertEquals(3, landmark.getPoints().getX(0), 0);
+        assertEquals(6, landmark.getPoints().getY(0), 0);
+    }
+}
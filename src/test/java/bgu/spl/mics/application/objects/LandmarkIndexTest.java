@@ -0,0 +1,97 @@
+package bgu.spl.mics.application.objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class LandmarkIndexTest
+{
+    private static LandMark landmark(String id, double... xy)
+    {
+        PointCloud.Builder points = new PointCloud.Builder(PointCloud.Precision.DOUBLE, xy.length / 2);
+        for (int i = 0; i < xy.length; i += 2)
+            points.add(xy[i], xy[i + 1], 0);
+        return new LandMark(id, id, points.build());
+    }
+
+    private static double[] centroid(LandMark l)
+    {
+        PointCloud p = l.getPoints();
+        double cx = 0, cy = 0;
+        for (int i = 0; i < p.size(); i++)
+        {
+            cx += p.getX(i);
+            cy += p.getY(i);
+        }
+        return new double[] { cx / p.size(), cy / p.size() };
+    }
+
+    private static double distance(LandMark l, double x, double y)
+    {
+        double[] c = centroid(l);
+        return Math.hypot(c[0] - x, c[1] - y);
+    }
+
+    @Test
+    public void queriesMatchABruteForceSearch()
+    {
+        Random random = new Random(7);
+        LandmarkIndex index = new LandmarkIndex(2.0);
+        List<LandMark> all = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+        {
+            // clustered, with a few far away outliers
+            double spread = i % 100 == 0 ? 10000 : 50;
+            double x = random.nextGaussian() * spread;
+            double y = random.nextGaussian() * spread;
+            LandMark l = landmark("L" + i, x - 0.5, y, x + 0.5, y);
+            all.add(l);
+            index.update(l);
+        }
+        assertEquals(all.size(), index.size());
+        for (int q = 0; q < 500; q++)
+        {
+            double x = random.nextGaussian() * (q % 10 == 0 ? 20000 : 60);
+            double y = random.nextGaussian() * 60;
+            LandMark nearest = index.nearest(x, y);
+            for (LandMark l : all)
+                assertTrue(distance(nearest, x, y) <= distance(l, x, y), "closer landmark than " + nearest.getId());
+
+            Set<LandMark> expected = new HashSet<>();
+            for (LandMark l : all)
+            {
+                double[] c = centroid(l);
+                if (c[0] >= x - 10 && c[0] <= x + 10 && c[1] >= y - 5 && c[1] <= y + 5)
+                    expected.add(l);
+            }
+            assertEquals(expected, new HashSet<>(index.within(x - 10, y - 5, x + 10, y + 5)));
+        }
+    }
+
+    @Test
+    public void movedLandmarksAreReindexed()
+    {
+        LandmarkIndex index = new LandmarkIndex(1.0);
+        assertNull(index.nearest(0, 0));
+        LandMark moving = landmark("moving", 0.5, 0.5);
+        LandMark still = landmark("still", 3, 3);
+        index.update(moving);
+        index.update(still);
+        assertSame(moving, index.nearest(0, 0));
+        moving.refine(new double[] { 19.5 }, new double[] { 19.5 }, 1);
+        index.update(moving);
+        assertSame(still, index.nearest(0, 0));
+        assertEquals(1, index.within(9, 9, 11, 11).size());
+        assertEquals(0, index.within(0, 0, 1, 1).size());
+        assertEquals(2, index.size());
+    }
+}
@@ -0,0 +1,92 @@
+package bgu.spl.mics.application.objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+public class LiDarDataBaseTest
+{
+    private static class Recorded
+    {
+        int time;
+        String id;
+        List<List<Double>> cloudPoints;
+    }
+
+    @Test
+    public void matchesAFullParseOfTheExampleInput() throws Exception
+    {
+        Path file = Paths.get("example_input_2", "lidar_data.json");
+        List<Recorded> expected;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+        {
+            expected = new Gson().fromJson(reader, new TypeToken<List<Recorded>>() {}.getType());
+        }
+        LiDarDataBase db = LiDarDataBase.load(file.toString(), PointCloud.Precision.DOUBLE);
+        assertEquals(expected.size(), db.size());
+        int lastTime = 0;
+        for (Recorded r : expected)
+        {
+            StampedCloudPoints stamp = db.getCloudPoints(r.time, r.id);
+            assertEquals(r.time, stamp.getTime());
+            assertEquals(r.id, stamp.getId());
+            assertEquals(r.cloudPoints.size(), stamp.getCloudPoints().size());
+            for (int i = 0; i < r.cloudPoints.size(); i++)
+            {
+                CloudPoint p = stamp.getCloudPoints().get(i);
+                assertEquals(r.cloudPoints.get(i).get(0), p.getX(), 0);
+                assertEquals(r.cloudPoints.get(i).get(1), p.getY(), 0);
+                assertEquals(r.cloudPoints.get(i).get(2), p.getZ(), 0);
+            }
+            lastTime = Math.max(lastTime, r.time);
+        }
+        assertEquals(lastTime, db.getLastTime());
+    }
+
+    @Test
+    public void ignoresBracketsInsideStrings(@TempDir Path dir) throws Exception
+    {
+        Path file = dir.resolve("lidar.json");
+        String json = "[{\"time\":2,\"id\":\"Door_{1}\\\"]\",\"cloudPoints\":[[1.5,2.5]]},\n"
+                + " {\"cloudPoints\":[[3,4,5],[6,7,8]],\"id\":\"Chaise_é\",\"time\":3}]";
+        Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+        LiDarDataBase db = LiDarDataBase.load(file.toString(), PointCloud.Precision.DOUBLE);
+        assertEquals(2, db.size());
+        StampedCloudPoints door = db.getCloudPoints(2, "Door_{1}\"]");
+        assertEquals(1, door.getCloudPoints().size());
+        assertEquals(2.5, door.getCloudPoints().get(0).getY(), 0);
+        StampedCloudPoints chair = db.getCloudPoints(3, "Chaise_é");
+        assertEquals(8, chair.getCloudPoints().get(1).getZ(), 0);
+        assertNull(db.getCloudPoints(3, "Door_{1}\"]"));
+    }
+
+    @Test
+    public void keepsEveryStampOfARepeatedTimeAndId(@TempDir Path dir) throws Exception
+    {
+        Path file = dir.resolve("lidar.json");
+        String json = "[{\"time\":1,\"id\":\"A\",\"cloudPoints\":[[1,1,0]]},"
+                + "{\"time\":1,\"id\":\"A\",\"cloudPoints\":[[2,2,0]]},"
+                + "{\"time\":2,\"id\":\"B\",\"cloudPoints\":[[3,3,0]]}]";
+        Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+        LiDarDataBase db = LiDarDataBase.load(file.toString(), PointCloud.Precision.DOUBLE);
+        assertEquals(3, db.size());
+        List<String> visited = new ArrayList<>();
+        db.forEach(stamp -> visited.add(stamp.getId() + "@" + stamp.getTime()));
+        assertEquals(Arrays.asList("A@1", "A@1", "B@2"), visited);
+        assertEquals(2, db.getCloudPoints(1, "A").getCloudPoints().get(0).getX(), 0);
+    }
+}
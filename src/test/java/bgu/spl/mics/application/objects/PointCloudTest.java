@@ -0,0 +1,34 @@
+package bgu.spl.mics.application.objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class PointCloudTest
+{
+    @Test
+    public void storesPointsInEitherPrecision()
+    {
+        for (PointCloud.Precision precision : PointCloud.Precision.values())
+        {
+            PointCloud.Builder builder = new PointCloud.Builder(precision, 1);
+            for (int i = 0; i < 100; i++)
+                builder.add(i, -i, 0.1 * i);
+            PointCloud cloud = builder.build();
+            assertEquals(precision, cloud.getPrecision());
+            assertEquals(100, cloud.size());
+            List<CloudPoint> points = cloud.asList();
+            assertEquals(100, points.size());
+            assertEquals(42, points.get(42).getX(), 0);
+            assertEquals(-42, cloud.getY(42), 0);
+            double z = precision == PointCloud.Precision.DOUBLE ? 0.1 * 42 : (float) (0.1 * 42);
+            assertEquals(z, points.get(42).getZ(), 0);
+            assertThrows(IndexOutOfBoundsException.class, () -> cloud.get(100));
+        }
+        assertEquals(0, PointCloud.empty().size());
+        assertEquals(3.5, new CloudPoint(1, 2, 3.5).getZ(), 0);
+    }
+}
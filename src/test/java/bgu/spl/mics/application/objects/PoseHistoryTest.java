@@ -0,0 +1,51 @@
+package bgu.spl.mics.application.objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+public class PoseHistoryTest
+{
+    @Test
+    public void keepsPosesForItsWindowOnly()
+    {
+        PoseHistory history = new PoseHistory(5);
+        assertEquals(8, history.capacity());
+        assertNull(history.get(1));
+        Pose[] poses = new Pose[100];
+        for (int t = 1; t < poses.length; t++)
+        {
+            poses[t] = new Pose(t, t, -t, 0);
+            history.add(poses[t]);
+            assertSame(poses[t], history.get(t));
+            assertNull(history.get(t + 1));
+        }
+        for (int t = 92; t < 100; t++)
+            assertSame(poses[t], history.get(t));
+        assertNull(history.get(91));
+        assertNull(history.get(1));
+        // too old to be kept
+        history.add(new Pose(50, 0, 0, 0));
+        assertNull(history.get(50));
+    }
+
+    @Test
+    public void interpolatesMissingPoses()
+    {
+        PoseHistory history = new PoseHistory(16);
+        history.add(new Pose(2, 0, 10, 170));
+        assertNull(history.get(1));
+        assertNull(history.get(3));
+        history.add(new Pose(6, 4, 2, -170));
+        Pose pose = history.get(3);
+        assertEquals(3, pose.getTime());
+        assertEquals(1, pose.getX(), 1e-6);
+        assertEquals(8, pose.getY(), 1e-6);
+        // the short way around, through 180
+        assertEquals(175, pose.getYaw(), 1e-4);
+        assertEquals(-175 + 360, history.get(5).getYaw(), 1e-4);
+        assertNull(history.get(1));
+    }
+}
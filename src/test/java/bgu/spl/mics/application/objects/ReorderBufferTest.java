@@ -0,0 +1,40 @@
+package bgu.spl.mics.application.objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ReorderBufferTest
+{
+    private static TrackedObject object(String id, int time)
+    {
+        return new TrackedObject(id, time, id, PointCloud.empty());
+    }
+
+    @Test
+    public void releasesObjectsInBulkByDetectionTime()
+    {
+        ReorderBuffer buffer = new ReorderBuffer();
+        buffer.park(object("c", 7), 2);
+        buffer.park(object("a", 4), 2);
+        buffer.park(object("b", 5), 3);
+        assertEquals(3, buffer.size());
+        assertTrue(buffer.release(3).isEmpty());
+
+        List<TrackedObject> due = buffer.release(5);
+        assertEquals(2, due.size());
+        assertEquals("a", due.get(0).getId());
+        assertEquals("b", due.get(1).getId());
+        assertEquals(1, buffer.size());
+
+        assertEquals("c", buffer.release(9).get(0).getId());
+        assertEquals(0, buffer.size());
+        assertEquals(3, buffer.getMaxSize());
+        assertEquals(3, buffer.getReleased());
+        assertEquals(7, buffer.getMaxWait());
+        assertEquals((3 + 2 + 7) / 3.0, buffer.getMeanWait(), 1e-9);
+    }
+}
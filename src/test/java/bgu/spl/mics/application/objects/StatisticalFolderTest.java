@@ -0,0 +1,104 @@
+package bgu.spl.mics.application.objects;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class StatisticalFolderTest
+{
+    @Test
+    public void breakdownsAddUpUnderConcurrentUpdates() throws InterruptedException
+    {
+        StatisticalFolder folder = new StatisticalFolder();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 16; t++)
+        {
+            // pairs of threads share a sensor
+            StatisticalFolder.Counter counter = folder.counter(StatisticalFolder.Metric.DETECTED_OBJECTS, "Camera" + t / 2);
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10000; i++)
+                    counter.add(i % 300, 1);
+            }));
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+
+        StatisticalFolder.Snapshot snapshot = folder.snapshot();
+        assertEquals(160000, snapshot.getTotal(StatisticalFolder.Metric.DETECTED_OBJECTS));
+        assertEquals(160000, folder.getNumDetectedObjects());
+        assertEquals(8, snapshot.getBySensor(StatisticalFolder.Metric.DETECTED_OBJECTS).size());
+        assertEquals(20000L, (long) snapshot.getBySensor(StatisticalFolder.Metric.DETECTED_OBJECTS).get("Camera3"));
+        long[] byTick = snapshot.getByTick(StatisticalFolder.Metric.DETECTED_OBJECTS);
+        assertEquals(300, byTick.length);
+        // 10000 = 33 * 300 + 100
+        assertEquals(16 * 34, byTick[99]);
+        assertEquals(16 * 33, byTick[100]);
+        assertEquals(0, snapshot.getTotal(StatisticalFolder.Metric.LANDMARKS));
+    }
+
+    @Test
+    public void countsPerSensorAndTick()
+    {
+        StatisticalFolder folder = new StatisticalFolder();
+        StatisticalFolder.Counter lidar = folder.counter(StatisticalFolder.Metric.TRACKED_OBJECTS, "LiDar1");
+        assertSame(lidar, folder.counter(StatisticalFolder.Metric.TRACKED_OBJECTS, "LiDar1"));
+        lidar.add(3, 2);
+        lidar.add(5, 1);
+        lidar.add(-1, 4);
+        lidar.add(Integer.MAX_VALUE, 1);
+        folder.counter(StatisticalFolder.Metric.TRACKED_OBJECTS, "LiDar2").add(3, 1);
+        folder.updateSystemRuntime(7);
+        folder.updateSystemRuntime(5);
+
+        StatisticalFolder.Snapshot snapshot = folder.snapshot();
+        assertEquals(7, snapshot.getSystemRuntime());
+        assertEquals(9, snapshot.getTotal(StatisticalFolder.Metric.TRACKED_OBJECTS));
+        assertArrayEquals(new long[] { 0, 0, 0, 1 }, snapshot.getByTick(StatisticalFolder.Metric.TRACKED_OBJECTS, "LiDar2"));
+        long[] byTick = snapshot.getByTick(StatisticalFolder.Metric.TRACKED_OBJECTS);
+        assertEquals(StatisticalFolder.Counter.MAX_TICK + 1, byTick.length);
+        assertEquals(4, byTick[0]);
+        assertEquals(3, byTick[3]);
+        assertEquals(1, byTick[StatisticalFolder.Counter.MAX_TICK]);
+        assertEquals(0, snapshot.getByTick(StatisticalFolder.Metric.LANDMARKS, "FusionSlam").length);
+    }
+
+    @Test
+    public void totalsAgreeWithTheSnapshotWhileChunksAreAdded() throws InterruptedException
+    {
+        StatisticalFolder folder = new StatisticalFolder();
+        StatisticalFolder.Counter counter = folder.counter(StatisticalFolder.Metric.LANDMARKS, "FusionSlam");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++)
+        {
+            int first = t;
+            // every thread needs chunks the others may be adding
+            threads.add(new Thread(() -> {
+                for (int tick = first; tick < 20000; tick += 8)
+                    counter.add(tick, 1);
+            }));
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+
+        StatisticalFolder.Snapshot totals = folder.totals();
+        StatisticalFolder.Snapshot snapshot = folder.snapshot();
+        assertEquals(20000, totals.getTotal(StatisticalFolder.Metric.LANDMARKS));
+        assertEquals(snapshot.getBySensor(StatisticalFolder.Metric.LANDMARKS),
+                totals.getBySensor(StatisticalFolder.Metric.LANDMARKS));
+        long[] byTick = snapshot.getByTick(StatisticalFolder.Metric.LANDMARKS);
+        assertEquals(20000, byTick.length);
+        for (long n : byTick)
+            assertEquals(1, n);
+        assertThrows(IllegalStateException.class, () -> totals.getByTick(StatisticalFolder.Metric.LANDMARKS));
+    }
+}
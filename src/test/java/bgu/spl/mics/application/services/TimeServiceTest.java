@@ -1,9 +1,19 @@
 package bgu.spl.mics.application.services;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import bgu.spl.mics.Callback;
+import bgu.spl.mics.MessageBusImpl;
 import bgu.spl.mics.MicroService;
 import bgu.spl.mics.application.messages.TerminatedBroadcast;
 import bgu.spl.mics.application.messages.TickBroadcast;
@@ -37,4 +47,102 @@ public class TimeServiceTest
     timeServiceThread.start();
     listenerServiceThread.start();
     }
-}
\ No newline at end of file
+
+    // services the tests below start, stopped after each test even if it timed out
+    private final List<MicroService> services = new CopyOnWriteArrayList<>();
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    public void stopServices() throws InterruptedException
+    {
+        for (MicroService service : services)
+            MessageBusImpl.getInstance().unregister(service);
+        for (Thread thread : threads)
+        {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    private void start(MicroService service)
+    {
+        Thread thread = new Thread(service, service.getName());
+        services.add(service);
+        threads.add(thread);
+        thread.start();
+    }
+
+    private List<Integer> runListener(TimeService timeService, long handlingMillis) throws InterruptedException
+    {
+        List<Integer> ticks = new ArrayList<>();
+        CountDownLatch subscribed = new CountDownLatch(1);
+        start(new MicroService("TickListener")
+        {
+            @Override
+            protected void initialize()
+            {
+                subscribeBroadcast(TickBroadcast.class, tick -> {
+                    ticks.add(tick.getTick());
+                    try
+                    {
+                        Thread.sleep(handlingMillis);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                subscribeBroadcast(TerminatedBroadcast.class, term -> terminate());
+                subscribed.countDown();
+            }
+        });
+        subscribed.await();
+        start(timeService);
+        for (Thread thread : threads)
+            thread.join();
+        return ticks;
+    }
+
+    @Test
+    public void sendsEveryTickAtAFixedRate()
+    {
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            long start = System.nanoTime();
+            List<Integer> ticks = runListener(new TimeService(10, 50), 0);
+            long elapsedMillis = (System.nanoTime() - start) / 1000000;
+            assertEquals(50, ticks.size());
+            for (int i = 0; i < ticks.size(); i++)
+                assertEquals(i + 1, ticks.get(i).intValue());
+            assertTrue(elapsedMillis >= 490, "ticks came faster than the tick time: " + elapsedMillis);
+        });
+    }
+
+    @Test
+    public void slowSubscriberReceivesCoalescedTicks()
+    {
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            List<Integer> ticks = runListener(new TimeService(2, 100, true), 20);
+            assertTrue(ticks.size() < 100, "expected missed ticks to be coalesced, got " + ticks.size());
+            for (int i = 1; i < ticks.size(); i++)
+                assertTrue(ticks.get(i) > ticks.get(i - 1));
+            assertEquals(100, ticks.get(ticks.size() - 1).intValue());
+            // the terminated TimeService no longer coalesces ticks
+            assertEquals(20, runListener(new TimeService(2, 20), 5).size());
+        });
+    }
+
+    @Test
+    public void virtualTimeWaitsForEverySubscriber()
+    {
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            long start = System.nanoTime();
+            // a tick time of a minute would never finish in real time
+            List<Integer> ticks = runListener(new TimeService(60000, 20, false, true), 5);
+            long elapsedMillis = (System.nanoTime() - start) / 1000000;
+            assertEquals(20, ticks.size());
+            for (int i = 0; i < ticks.size(); i++)
+                assertEquals(i + 1, ticks.get(i).intValue());
+            assertTrue(elapsedMillis < 5000, "virtual time followed the tick time: " + elapsedMillis);
+        });
+    }
+}
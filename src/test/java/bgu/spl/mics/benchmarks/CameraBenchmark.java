@@ -0,0 +1,82 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bgu.spl.mics.application.objects.Camera;
+import bgu.spl.mics.application.objects.DetectedObject;
+import bgu.spl.mics.application.objects.StampedDetectedObjects;
+
+/**
+ * Measures looking up the detections of a {@link Camera} by time, over
+ * {@code stamps} stamps taken every {@code spacing} ticks: a spacing of 1 is
+ * a dense recording, indexed by offset, and a large one a sparse recording,
+ * searched by binary search. {@link #atTime()} asks for the tick of a stamp
+ * and {@link #range()} for the detections due over 8 ticks from there, as a
+ * camera that fell behind does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CameraBenchmark
+{
+    @Param({ "100000" })
+    public int stamps;
+
+    @Param({ "1", "16" })
+    public int spacing;
+
+    private Camera camera;
+    private int tick;
+
+    @Setup
+    public void setUp()
+    {
+        List<StampedDetectedObjects> data = new ArrayList<>(stamps);
+        for (int i = 0; i < stamps; i++)
+        {
+            StampedDetectedObjects stamp = new StampedDetectedObjects(1 + i * spacing);
+            stamp.addObject(new DetectedObject("Object_" + i % 97, "Object"));
+            data.add(stamp);
+        }
+        camera = new Camera(1, 1, data);
+    }
+
+    @Benchmark
+    public List<DetectedObject> atTime()
+    {
+        return camera.getObjects(nextStamp());
+    }
+
+    @Benchmark
+    public List<StampedDetectedObjects> range()
+    {
+        int from = nextStamp();
+        return camera.getObjects(from, from + 7);
+    }
+
+    /**
+     * @return The time of a stamp picked at random, without allocating.
+     */
+    private int nextStamp()
+    {
+        tick = tick * 1103515245 + 12345;
+        return 1 + (tick >>> 1) % stamps * spacing;
+    }
+}
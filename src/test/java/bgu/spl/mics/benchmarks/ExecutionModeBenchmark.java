@@ -0,0 +1,106 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bgu.spl.mics.Event;
+import bgu.spl.mics.ExecutionMode;
+import bgu.spl.mics.Future;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.ServiceExecutor;
+
+/**
+ * Compares the execution modes of {@link ServiceExecutor}: one operation
+ * sends an event to every running micro-service and waits for all of them to
+ * be completed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutionModeBenchmark
+{
+    public static class WorkEvent implements Event<Integer> {}
+    public static class StopEvent implements Event<Boolean> {}
+
+    private static class Worker extends MicroService
+    {
+        private final CountDownLatch ready;
+
+        Worker(String name, CountDownLatch ready)
+        {
+            super(name);
+            this.ready = ready;
+        }
+
+        @Override
+        protected void initialize()
+        {
+            subscribeEvent(WorkEvent.class, e -> complete(e, 1));
+            subscribeEvent(StopEvent.class, e -> {
+                complete(e, true);
+                terminate();
+            });
+            ready.countDown();
+        }
+    }
+
+    @Param({ "10", "100", "1000" })
+    public int services;
+
+    @Param({ "THREAD_PER_SERVICE", "VIRTUAL_THREAD", "POOLED" })
+    public ExecutionMode mode;
+
+    private final MessageBusImpl bus = MessageBusImpl.getInstance();
+    private ServiceExecutor executor;
+    private Future<?>[] pending;
+
+    @Setup(Level.Trial)
+    public void start() throws InterruptedException
+    {
+        executor = new ServiceExecutor(mode, Runtime.getRuntime().availableProcessors());
+        CountDownLatch ready = new CountDownLatch(services);
+        for (int i = 0; i < services; i++)
+            executor.execute(new Worker("worker" + i, ready));
+        ready.await();
+        pending = new Future<?>[services];
+    }
+
+    @Benchmark
+    public int roundTrip()
+    {
+        for (int i = 0; i < services; i++)
+            pending[i] = bus.sendEvent(new WorkEvent());
+        int sum = 0;
+        for (int i = 0; i < services; i++)
+            sum += (Integer) pending[i].get();
+        return sum;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException
+    {
+        // workers unsubscribe as they stop, so keep sending until none is left
+        while (bus.sendEvent(new StopEvent()) != null)
+            Thread.yield();
+        executor.awaitTermination();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,98 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bgu.spl.mics.Event;
+import bgu.spl.mics.ExecutionMode;
+import bgu.spl.mics.Future;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.ServiceExecutor;
+
+/**
+ * Measures resolving a {@link Future} and getting its result: on one thread,
+ * which is the cost of the future itself, and across threads through a
+ * running micro-service that completes the events sent to it, which adds the
+ * message-bus and the wake-up of the waiting thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FutureBenchmark
+{
+    public static class EchoEvent implements Event<Integer> {}
+    public static class StopEvent implements Event<Boolean> {}
+
+    private static class Echo extends MicroService
+    {
+        private final CountDownLatch ready;
+
+        Echo(CountDownLatch ready)
+        {
+            super("echo");
+            this.ready = ready;
+        }
+
+        @Override
+        protected void initialize()
+        {
+            subscribeEvent(EchoEvent.class, e -> complete(e, 1));
+            subscribeEvent(StopEvent.class, e -> {
+                complete(e, true);
+                terminate();
+            });
+            ready.countDown();
+        }
+    }
+
+    private final MessageBusImpl bus = MessageBusImpl.getInstance();
+    private ServiceExecutor executor;
+
+    @Setup(Level.Trial)
+    public void start() throws InterruptedException
+    {
+        executor = new ServiceExecutor(ExecutionMode.THREAD_PER_SERVICE, 0);
+        CountDownLatch ready = new CountDownLatch(1);
+        executor.execute(new Echo(ready));
+        ready.await();
+    }
+
+    @Benchmark
+    public Integer resolveThenGet()
+    {
+        Future<Integer> future = new Future<>();
+        future.resolve(1);
+        return future.get();
+    }
+
+    @Benchmark
+    public Integer roundTripThroughService()
+    {
+        return bus.sendEvent(new EchoEvent()).get();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws InterruptedException
+    {
+        bus.sendEvent(new StopEvent()).get();
+        executor.awaitTermination();
+        executor.shutdown();
+    }
+}
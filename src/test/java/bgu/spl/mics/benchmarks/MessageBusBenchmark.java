@@ -0,0 +1,111 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.Event;
+import bgu.spl.mics.Message;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+
+/**
+ * Measures the fan-out of {@link MessageBusImpl} over {@code subscribers}
+ * registered micro-services, without running them: the benchmark thread
+ * takes their messages itself, so only the bus is measured.
+ * <p>
+ * One operation of {@link #sendBroadcast()} sends one broadcast to every
+ * subscriber and takes it from each mailbox; one operation of
+ * {@link #sendEvent()} sends one event per subscriber, dispatched round-robin,
+ * then takes and completes each of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBusBenchmark
+{
+    public static class FanOutBroadcast implements Broadcast {}
+    public static class FanOutEvent implements Event<Boolean> {}
+
+    private static class Passive extends MicroService
+    {
+        Passive(String name)
+        {
+            super(name);
+        }
+
+        @Override
+        protected void initialize()
+        {
+        }
+    }
+
+    @Param({ "1", "10", "100", "1000" })
+    public int subscribers;
+
+    private final MessageBusImpl bus = MessageBusImpl.getInstance();
+    private MicroService[] services;
+    private final Message[] batch = new Message[64];
+
+    @Setup(Level.Trial)
+    public void register()
+    {
+        services = new MicroService[subscribers];
+        for (int i = 0; i < subscribers; i++)
+        {
+            services[i] = new Passive("passive" + i);
+            bus.register(services[i]);
+            bus.subscribeBroadcast(FanOutBroadcast.class, services[i]);
+            bus.subscribeEvent(FanOutEvent.class, services[i]);
+        }
+    }
+
+    @Benchmark
+    public int sendBroadcast() throws InterruptedException
+    {
+        bus.sendBroadcast(new FanOutBroadcast());
+        int taken = 0;
+        for (MicroService m : services)
+            taken += bus.awaitMessages(m, batch);
+        return taken;
+    }
+
+    @Benchmark
+    public int sendEvent() throws InterruptedException
+    {
+        for (int i = 0; i < subscribers; i++)
+            bus.sendEvent(new FanOutEvent());
+        int taken = 0;
+        for (MicroService m : services)
+        {
+            int n = bus.awaitMessages(m, batch);
+            for (int i = 0; i < n; i++)
+                bus.complete((FanOutEvent) batch[i], true);
+            taken += n;
+        }
+        return taken;
+    }
+
+    @TearDown(Level.Trial)
+    public void unregister()
+    {
+        for (MicroService m : services)
+            bus.unregister(m);
+    }
+}
@@ -0,0 +1,116 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bgu.spl.mics.application.objects.PointCloud;
+
+/**
+ * Compares the heap footprint of a LiDAR frame stored in a {@link PointCloud}
+ * against one object per point, and against the boxed lists Gson produces
+ * for {@code List<List<Double>>}.
+ * <p>
+ * One operation builds a frame of {@code points} points with no spare
+ * capacity, so with {@code -prof gc} the {@code gc.alloc.rate.norm} column is
+ * the size of the frame in bytes. Each operation also sums the frame once,
+ * which is the cost of reading it back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class PointCloudBenchmark
+{
+    private static final class ObjectPoint
+    {
+        private final double x, y, z;
+
+        ObjectPoint(double x, double y, double z)
+        {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+    @Param({ "1000000" })
+    public int points;
+
+    private double[] source;
+
+    @Setup
+    public void setUp()
+    {
+        source = new double[points * 3];
+        for (int i = 0; i < source.length; i++)
+            source[i] = Math.sin(i) * 10;
+    }
+
+    @Benchmark
+    public double columnsOfDoubles()
+    {
+        return sum(build(PointCloud.Precision.DOUBLE));
+    }
+
+    @Benchmark
+    public double columnsOfFloats()
+    {
+        return sum(build(PointCloud.Precision.FLOAT));
+    }
+
+    @Benchmark
+    public double objectPerPoint()
+    {
+        List<ObjectPoint> frame = new ArrayList<>(points);
+        for (int i = 0; i < source.length; i += 3)
+            frame.add(new ObjectPoint(source[i], source[i + 1], source[i + 2]));
+        double sum = 0;
+        for (ObjectPoint p : frame)
+            sum += p.x + p.y + p.z;
+        return sum;
+    }
+
+    @Benchmark
+    public double boxedLists()
+    {
+        List<List<Double>> frame = new ArrayList<>(points);
+        for (int i = 0; i < source.length; i += 3)
+            frame.add(Arrays.asList(source[i], source[i + 1], source[i + 2]));
+        double sum = 0;
+        for (List<Double> p : frame)
+            sum += p.get(0) + p.get(1) + p.get(2);
+        return sum;
+    }
+
+    private PointCloud build(PointCloud.Precision precision)
+    {
+        PointCloud.Builder builder = new PointCloud.Builder(precision, points);
+        for (int i = 0; i < source.length; i += 3)
+            builder.add(source[i], source[i + 1], source[i + 2]);
+        return builder.build();
+    }
+
+    private static double sum(PointCloud cloud)
+    {
+        double sum = 0;
+        for (int i = 0; i < cloud.size(); i++)
+            sum += cloud.getX(i) + cloud.getY(i) + cloud.getZ(i);
+        return sum;
+    }
+}
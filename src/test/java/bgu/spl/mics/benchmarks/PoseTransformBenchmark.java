@@ -0,0 +1,120 @@
+package bgu.spl.mics.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bgu.spl.mics.application.Configuration;
+import bgu.spl.mics.application.SensorInputs;
+import bgu.spl.mics.application.objects.CloudPoint;
+import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.PointCloud;
+import bgu.spl.mics.application.objects.Pose;
+
+/**
+ * Measures transforming the LiDAR frames of {@code example_input_2} into the
+ * global coordinate system with the pose at their time, each frame repeated
+ * {@code scale} times.
+ * <p>
+ * {@link #batch()} uses {@link FusionSlam#toGlobal} into columns reused
+ * across frames; {@link #perPoint()} transforms point by point into a new
+ * point cloud per frame, recomputing the rotation for every point, as fusion
+ * did before the batch transform. Run with {@code -prof gc} to compare the
+ * allocation rates as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class PoseTransformBenchmark
+{
+    @Param({ "example_input_2/configuration_file.json" })
+    public String configuration;
+
+    @Param({ "1000" })
+    public int scale;
+
+    private final List<PointCloud> frames = new ArrayList<>();
+    private final List<Pose> poses = new ArrayList<>();
+    private double[] x, y, globalX, globalY;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        SensorInputs inputs = SensorInputs.fromJson(Configuration.load(configuration));
+        Map<Integer, Pose> byTime = new HashMap<>();
+        for (Pose pose : inputs.getPoses())
+            byTime.put(pose.getTime(), pose);
+        int[] largest = { 0 };
+        inputs.getLidar().forEach(stamp -> {
+            Pose pose = byTime.get(stamp.getTime());
+            PointCloud points = stamp.getPoints();
+            if (pose == null)
+                return;
+            // repeat the frame, so that a frame is as long as scale frames
+            PointCloud.Builder scaled = new PointCloud.Builder(PointCloud.Precision.DOUBLE, points.size() * scale);
+            for (int r = 0; r < scale; r++)
+                for (int i = 0; i < points.size(); i++)
+                    scaled.add(points.getX(i), points.getY(i), points.getZ(i));
+            frames.add(scaled.build());
+            poses.add(pose);
+            largest[0] = Math.max(largest[0], points.size() * scale);
+        });
+        x = new double[largest[0]];
+        y = new double[largest[0]];
+        globalX = new double[largest[0]];
+        globalY = new double[largest[0]];
+    }
+
+    @Benchmark
+    public double batch()
+    {
+        double sum = 0;
+        for (int f = 0; f < frames.size(); f++)
+        {
+            PointCloud frame = frames.get(f);
+            frame.copyXY(x, y);
+            FusionSlam.toGlobal(poses.get(f), x, y, frame.size(), globalX, globalY);
+            sum += globalX[frame.size() - 1] + globalY[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double perPoint()
+    {
+        double sum = 0;
+        for (int f = 0; f < frames.size(); f++)
+        {
+            Pose pose = poses.get(f);
+            List<CloudPoint> local = frames.get(f).asList();
+            PointCloud.Builder global = new PointCloud.Builder(PointCloud.Precision.DOUBLE, local.size());
+            for (CloudPoint point : local)
+            {
+                double yaw = Math.toRadians(pose.getYaw());
+                global.add(Math.cos(yaw) * point.getX() - Math.sin(yaw) * point.getY() + pose.getX(),
+                        Math.sin(yaw) * point.getX() + Math.cos(yaw) * point.getY() + pose.getY(), 0);
+            }
+            PointCloud built = global.build();
+            sum += built.getX(built.size() - 1) + built.getY(0);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,84 @@
+package bgu.spl.mics.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bgu.spl.mics.application.Configuration;
+import bgu.spl.mics.application.GurionRockRunner;
+import bgu.spl.mics.application.InputGenerator;
+
+/**
+ * Measures a whole run of {@link GurionRockRunner}, from parsing the data
+ * files to writing the output, on inputs of an {@link InputGenerator} in
+ * virtual time: every camera detects {@code objects} objects of
+ * {@code points} points at each of {@code ticks} ticks, and one LiDAR worker
+ * per camera tracks them.
+ * <p>
+ * FusionSlam and the statistics are singletons that keep their state between
+ * runs in one JVM, so every run is measured cold in a fork of its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class RunnerBenchmark
+{
+    @Param({ "4" })
+    public int cameras;
+
+    @Param({ "1000" })
+    public int ticks;
+
+    @Param({ "4" })
+    public int objects;
+
+    @Param({ "8" })
+    public int points;
+
+    private Path dir;
+    private Path config;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException
+    {
+        dir = Files.createTempDirectory("runner-benchmark");
+        config = new InputGenerator(cameras, cameras, ticks, objects, points).write(dir);
+    }
+
+    @Benchmark
+    public void run() throws IOException, InterruptedException
+    {
+        // throws rather than printing, so a failed run fails the benchmark
+        GurionRockRunner.run(Configuration.load(config.toString()));
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException
+    {
+        try (Stream<Path> files = Files.list(dir))
+        {
+            for (Path file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,75 @@
+package bgu.spl.mics.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import bgu.spl.mics.application.objects.StatisticalFolder;
+
+/**
+ * Measures counting into the {@link StatisticalFolder} from 64 threads at
+ * once, against the shared atomic counter it used before.
+ * <p>
+ * {@link #perSensor()} has each thread count as a sensor of its own, as the
+ * services do; {@link #sharedSensor()} has all of them count into the same
+ * sensor, the worst case for the folder. All counts go to the same tick.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+public class StatisticsBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class Shared
+    {
+        final AtomicInteger atomic = new AtomicInteger();
+        final StatisticalFolder.Counter counter = StatisticalFolder.getInstance()
+                .counter(StatisticalFolder.Metric.DETECTED_OBJECTS, "shared");
+    }
+
+    @State(Scope.Thread)
+    public static class Sensor
+    {
+        StatisticalFolder.Counter counter;
+
+        @Setup
+        public void setUp(ThreadParams thread)
+        {
+            counter = StatisticalFolder.getInstance()
+                    .counter(StatisticalFolder.Metric.DETECTED_OBJECTS, "sensor" + thread.getThreadIndex());
+        }
+    }
+
+    @Benchmark
+    public int sharedAtomic(Shared shared)
+    {
+        return shared.atomic.addAndGet(1);
+    }
+
+    @Benchmark
+    public void sharedSensor(Shared shared)
+    {
+        shared.counter.add(1, 1);
+    }
+
+    @Benchmark
+    public void perSensor(Sensor sensor)
+    {
+        sensor.counter.add(1, 1);
+    }
+}